@@ -1,5 +1,4 @@
-import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Abstract class representing common elements of all animals in the ecosystem simulation.
@@ -16,95 +15,80 @@ import java.util.Random;
  */
 public abstract class Animal
 {
-    // Random number generator for probabilistic behaviors
-    private static final Random rand = Randomizer.getRandom();
-    
-    // Core animal characteristics
-    private boolean alive;         // Whether the animal is currently alive
-    private Location location;     // Current position in the field
-    private final boolean isMale;  // Gender of the animal (affects breeding)
-    private int age;              // Current age in steps
-    private int foodLevel;        // Current food level (0 = starving)
-    private int breedingAge;      // Age at which the animal can start breeding
-    
-    // Disease tracking variables
-    private boolean infected = false;      // Current infection status
-    private boolean justInfected = false;  // Tracks new infections for immediate effects
-    
-    // Disease-related probabilities
-    protected static final double PREDATOR_INFECTION_PROBABILITY = 0.8;  // Chance of infection when eating infected prey
-    private static final double PREDATOR_DEATH_PROBABILITY = 0.4;        // Chance of death after infection
+    // The state of the animal (age, food level, cell, sex, infection) is held
+    // in a columnar Population; this object is a view onto its slot there.
+    private final Population population;
+    private int slot;              // Population.NO_SLOT once the animal is dead
     
     /**
      * Creates a new animal with specified characteristics.
      * If randomized, the animal starts with random age and gender.
      * If not randomized, starts as a newborn female.
      * 
+     * @param field The field the animal lives in; its state is kept in the field's population
      * @param location The animal's starting location
      * @param randomize Whether to randomize initial characteristics
-     * @param breedingAge Age at which the animal can start breeding
-     * @param lifespan Maximum possible age of the animal
+     * @param rand The random stream for the initial characteristics
      */
-    public Animal(Location location, boolean randomize, int breedingAge, int lifespan) {
-        this.alive = true;
-        this.location = location;
-        this.breedingAge = breedingAge;
-
+    public Animal(Field field, Location location, boolean randomize, RandomGenerator rand) {
+        boolean isMale;
+        int age;
+        int foodLevel;
         if (randomize) {
-            this.isMale = Randomizer.getRandom().nextBoolean();
-            this.age = Randomizer.getRandom().nextInt(getMaxAge()); // Random starting age
-            this.foodLevel = getInitialFoodLevel(); // Ensure animal starts with food
+            isMale = rand.nextBoolean();
+            age = rand.nextInt(getMaxAge()); // Random starting age
+            foodLevel = getInitialFoodLevel(); // Ensure animal starts with food
         } else {
-            this.isMale = false; // Default to female if not randomized
-            this.age = 0; // Start at birth
-            this.foodLevel = getMaxFoodValue(); // Full food if not randomized
+            isMale = false; // Default to female if not randomized
+            age = 0; // Start at birth
+            foodLevel = getMaxFoodValue(); // Full food if not randomized
         }   
+        int cell = location == null ? Field.NO_CELL : location.toCell();
+        population = field.getPopulation();
+        slot = population.add(this, getSpeciesId(), getMaxAge(), cell, isMale, age, foodLevel);
     }
     
     /**
      * Main action method called each simulation step.
      * Handles:
-     * - Aging and hunger
-     * - Disease effects
      * - Movement and hunting
      * - Breeding
+     * Aging, hunger and disease are applied to the whole population
+     * at once by Population.updateLifeCycle, before the animals act.
      * 
      * @param currentField Current state of the field
      * @param nextFieldState Next state being built
+     * @param context The simulation's clock and weather
+     * @param rand The random stream for this animal's decisions
      */
-    public void act(Field currentField, Field nextFieldState) {
-        incrementAge();
-        incrementHunger();
-        handleDisease();    // kill newly infected predators 70% of the time
-        
+    public void act(Field currentField, Field nextFieldState, SimulationContext context, RandomGenerator rand) {
         if(isAlive()) {
             // Check if active based on time of day
-            if(!isActiveTime()) {
+            if(!isActiveTime(context.getClock())) {
                 if(rand.nextDouble() < getRestingProbability()) {
                     return;  // Rest during inactive period
                 }
             }
             
-            // Get possible moves and look for food
-            List<Location> freeLocations = nextFieldState.getFreeAdjacentLocations(getLocation());
-            Location foodLocation = findFood(currentField);
+            // Look for food
+            int foodCell = findFood(currentField, rand);
             
             // Try to breed if well-fed
-            if(foodLevel >= getMaxFoodValue()/4 && !freeLocations.isEmpty()) {
-                if(canBreed() && canFindMate(currentField)) {
-                    giveBirth(nextFieldState, freeLocations);
+            if(getFoodLevel() >= getMaxFoodValue()/4 && nextFieldState.hasFreeNeighbour(getCell())) {
+                if(canBreed() && canFindMate(currentField, rand)) {
+                    giveBirth(nextFieldState, rand);
                 }
             }
             
             // Move to food or random location
-            Location newLocation = foodLocation;
-            if(newLocation == null && !freeLocations.isEmpty()) {
-                newLocation = freeLocations.get(0);
+            int newCell = foodCell;
+            if(newCell == Field.NO_CELL) {
+                newCell = nextFieldState.randomFreeNeighbour(getCell(), rand);
             }
             
-            if(newLocation != null) {
-                setLocation(newLocation);
-                nextFieldState.placeAnimal(this, newLocation);
+            if(newCell != Field.NO_CELL) {
+                setCell(newCell);
+                nextFieldState.placeAnimal(this, newCell);
             }
             else {
                 setDead();
@@ -112,8 +96,8 @@ public abstract class Animal
         }
     }
     
-    protected boolean isBreedingSeason() {
-        return Season.isBreedingSeason(TimeKeeper.getCurrentSeason());
+    protected boolean isBreedingSeason(TimeKeeper clock) {
+        return Season.isBreedingSeason(clock.getCurrentSeason());
     }
     
     /**
@@ -122,25 +106,38 @@ public abstract class Animal
      */
     public boolean isAlive()
     {
-        return alive;
+        return slot != Population.NO_SLOT;
     }
 
     /**
      * Indicate that the animal is no longer alive.
+     * Its slot in the population is freed for reuse.
      */
     protected void setDead()
     {
-        alive = false;
-        location = null;
+        if(slot != Population.NO_SLOT) {
+            population.remove(slot);
+            slot = Population.NO_SLOT;
+        }
     }
     
     /**
      * Return the animal's location.
-     * @return The animal's location.
+     * @return The animal's location, or null if it is dead.
      */
     public Location getLocation()
     {
-        return location;
+        int cell = getCell();
+        return cell == Field.NO_CELL ? null : Location.ofCell(cell);
+    }
+    
+    /**
+     * Return the animal's cell.
+     * @return The animal's packed cell index, or Field.NO_CELL if it is dead.
+     */
+    public int getCell()
+    {
+        return isAlive() ? population.getCell(slot) : Field.NO_CELL;
     }
     
     /**
@@ -149,62 +146,51 @@ public abstract class Animal
      */
     protected void setLocation(Location location)
     {
-        this.location = location;
-    }
-    
-    public boolean isMale() {
-        return isMale;
+        setCell(location == null ? Field.NO_CELL : location.toCell());
     }
     
     /**
-     * Make the animal get hungrier.
+     * Set the animal's cell.
+     * @param cell The new packed cell index.
      */
-    protected void incrementHunger() {
-        foodLevel--;
-        if(foodLevel <= 0) {
-            setDead();
-        }
+    protected void setCell(int cell)
+    {
+        population.setCell(slot, cell);
     }
     
-    /**
-     * Make the animal older.
-     */
-    protected void incrementAge() {
-        age++;
-        if(age > getMaxAge()) {
-            setDead();
-        }
+    public boolean isMale() {
+        return isAlive() && population.isMale(slot);
     }
     
     /**
      * Set the animal's food level.
      */
     protected void setFoodLevel(int foodLevel) {
-        this.foodLevel = foodLevel;
+        population.setFoodLevel(slot, foodLevel);
     }
     
     /**
      * Get the animal's current food level.
      */
     protected int getFoodLevel() {
-        return foodLevel;
+        return population.getFoodLevel(slot);
     }
     
     /**
      * Get the animal's current age.
      */
     protected int getAge() {
-        return age;
+        return population.getAge(slot);
     }
     
-    protected boolean canFindMate(Field field) {
+    protected boolean canFindMate(Field field, RandomGenerator rand) {
         int searchRadius = 1; // breeding distances
     
         for (int i = 0; i < searchRadius; i++) {
-            List<Location> nearbyLocations = field.getAdjacentLocations(getLocation());
+            Field.Neighbourhood around = field.neighbours(getCell(), rand);
     
-            for (Location loc : nearbyLocations) {
-                Animal potentialMate = field.getAnimalAt(loc);
+            while (around.next()) {
+                Animal potentialMate = around.getAnimal();
                 if (potentialMate != null && potentialMate.getClass() == this.getClass() && potentialMate.isAlive()) {
                     return true; // Found a mate within range
                 }
@@ -214,18 +200,21 @@ public abstract class Animal
     }
 
     
-    protected void giveBirth(Field nextFieldState, List<Location> freeLocations) {
-            int births = breed();
-            for(int b = 0; b < births && !freeLocations.isEmpty(); b++) {
-                Location loc = freeLocations.remove(0);
-                createYoung(false, loc, nextFieldState);
+    protected void giveBirth(Field nextFieldState, RandomGenerator rand) {
+            int births = breed(rand);
+            for(int b = 0; b < births; b++) {
+                int youngCell = nextFieldState.randomFreeNeighbour(getCell(), rand);
+                if(youngCell == Field.NO_CELL) {
+                    break;  // no room left for more young
+                }
+                createYoung(false, Location.ofCell(youngCell), nextFieldState, rand);
             }   
     }
     
     /**
      * Generate a birth number.
      */
-    private int breed() {
+    private int breed(RandomGenerator rand) {
         int births = 0;
         if(canBreed()) {
             if(!reproducesSexually()) {
@@ -248,52 +237,154 @@ public abstract class Animal
      * Check if animal can breed.
      */
     protected boolean canBreed() {
-        return age >= getBreedingAge();
+        return getAge() >= getBreedingAge();
     }
     
     /**
      * Infect this animal.
      */
     public void setInfected() {
-        this.infected = true;
-        this.justInfected = true;  // mark animal as just infected
+        population.setInfected(slot);  // the death chance is applied at the next life cycle update
+    }
+    
+    /**
+     * @return The animal's flags (sex and infection), for saving it.
+     */
+    public int getFlags() {
+        return population.getFlags(slot);
+    }
+    
+    /**
+     * Overwrite the animal's state with saved values (see Checkpoint).
+     * @param age The saved age.
+     * @param foodLevel The saved food level.
+     * @param flags The saved flags (see getFlags).
+     */
+    public void restore(int age, int foodLevel, int flags) {
+        population.restore(slot, age, foodLevel, flags);
     }
     
     /**
      * Check if the animal is infected.
      */
     public boolean isInfected() {
-        return infected;
+        return isAlive() && population.isInfected(slot);
     }
     
     /**
-     * Handles disease progression and effects.
-     * Newly infected predators have a chance to die immediately.
-     * Otherwise, infection clears after one cycle.
+     * Return the species of a live animal as stored in the population.
+     * Unlike getSpeciesId this is not overridden, so it is cheap to call
+     * on animals of any species.
+     * @return The animal's species (see Species).
      */
-    private void handleDisease() {
-        if (infected && justInfected) {
-            justInfected = false;  // reset flag so the death chance applies only once
-            if (rand.nextDouble() < PREDATOR_DEATH_PROBABILITY) {
-                setDead();
+    public final int getSpeciesTag() {
+        return population.getSpeciesId(slot);
+    }
+    
+    /**
+     * Look for food next to the animal, eating it if found. What the
+     * animal eats, and how, is given by the FoodWeb:
+     * - An animal only looks for food when below half its maximum food level.
+     * - An animal that fears a guild of predators does not eat next to
+     *   one unless its food level is at most its caution level.
+     * - The neighbours are visited in a random order. If some food of the
+     *   animal can escape, one chance is drawn per neighbour.
+     * - Food can be caught when the chance is below the success of the
+     *   pair. The most preferred food that can be caught is eaten,
+     *   stopping at the first one of preference 0; the first one found
+     *   wins a tie.
+     * - Prey that is eaten may pass on an infection.
+     * @param field The field currently occupied.
+     * @param rand The random stream for this animal's decisions.
+     * @return The packed cell index of the food, or Field.NO_CELL if none was eaten.
+     */
+    protected int findFood(Field field, RandomGenerator rand) {
+        if(getFoodLevel() >= getMaxFoodValue() / 2) {
+            return Field.NO_CELL;
+        }
+        int eater = getSpeciesTag();
+        Field.Neighbourhood around = field.neighbours(getCell(), rand);
+        int guild = FoodWeb.getFearedGuild(eater);
+        if(guild != FoodWeb.NO_GUILD && getFoodLevel() > FoodWeb.getCautionLevel(eater)
+           && field.isThreatened(getCell(), guild)) {
+            return Field.NO_CELL;
+        }
+        
+        boolean uncertain = FoodWeb.isUncertain(eater);
+        Animal bestPrey = null;
+        Plant bestPlant = null;
+        int bestCell = Field.NO_CELL;
+        int bestPreference = FoodWeb.NOT_FOOD;
+        while(around.next()) {
+            double chance = uncertain ? rand.nextDouble() : 0;
+            Animal prey = around.getAnimal();
+            if(prey != null && prey.isAlive()) {
+                int food = prey.getSpeciesTag();
+                int preference = FoodWeb.getPreference(eater, food);
+                if(preference < bestPreference && chance < FoodWeb.getSuccess(eater, food)) {
+                    bestPrey = prey;
+                    bestPlant = null;
+                    bestCell = around.getCell();
+                    bestPreference = preference;
+                    if(preference == 0) {
+                        break;
+                    }
+                }
+            }
+            Plant plant = around.getPlant();
+            if(plant != null && plant.isAlive()) {
+                int food = plant.getSpeciesId();
+                int preference = FoodWeb.getPreference(eater, food);
+                if(preference < bestPreference && chance < FoodWeb.getSuccess(eater, food)) {
+                    bestPrey = null;
+                    bestPlant = plant;
+                    bestCell = around.getCell();
+                    bestPreference = preference;
+                    if(preference == 0) {
+                        break;
+                    }
+                }
+            }
+        }
+        if(bestPrey != null) {
+            int food = bestPrey.getSpeciesTag();
+            double transmission = FoodWeb.getTransmission(eater, food);
+            if(transmission > 0 && bestPrey.isInfected() && rand.nextDouble() < transmission) {
+                setInfected();
             }
+            bestPrey.setDead();
+            eat(FoodWeb.getFoodValue(eater, food));
         }
+        else if(bestPlant != null) {
+            bestPlant.setDead();
+            eat(FoodWeb.getFoodValue(eater, bestPlant.getSpeciesId()));
+        }
+        return bestCell;
     }
     
+    /**
+     * Make the animal eat food.
+     * @param foodValue The amount of food gained.
+     */
+    protected abstract void eat(int foodValue);
+    
     protected boolean reproducesSexually() {
         return true;  // Default is true, override in Lizard class to return false
     }
 
     // Abstract methods to be implemented by specific animals
-    protected abstract Location findFood(Field field);
+    /**
+     * @return The animal's species (see Species).
+     */
+    public abstract int getSpeciesId();
     protected abstract int getMaxAge();
     protected abstract int getBreedingAge();
     protected abstract double getBreedingProbability();
     protected abstract int getMaxLitterSize();
     protected abstract int getMaxFoodValue();
     protected abstract int getInitialFoodLevel();
-    protected abstract boolean isActiveTime();
+    protected abstract boolean isActiveTime(TimeKeeper clock);
     protected abstract double getRestingProbability();
-    protected abstract void createYoung(boolean randomAge, Location location, Field field);
+    protected abstract void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand);
     
 }
\ No newline at end of file
@@ -1,6 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Models a Bear in the ecosystem simulation.
@@ -25,10 +23,6 @@ public class Bear extends Animal
     private static final int MAX_AGE = 8;
     private static final double BREEDING_PROBABILITY = 0.20;
     private static final int MAX_LITTER_SIZE = 5;
-    private static final int DEER_FOOD_VALUE = 60;
-    private static final int MOUSE_FOOD_VALUE = 25;
-    
-    protected static final Random rand = Randomizer.getRandom();
 
     /**
      * Create a new bear. Bears can be created as newborn (age zero and not hungry)
@@ -37,52 +31,13 @@ public class Bear extends Animal
      * @param randomAge If true, the bear starts with random age and hunger.
      * @param field The field currently being used.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Bear(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
+    public Bear(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
     }
     
      /**
-     * Look for prey adjacent to the current location.
-     * Bears prioritize deer over mice and only hunt when hungry.
-     * Implements 50% hunting efficiency reduction and disease transmission.
-     * 
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if none found.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-        
-            while(it.hasNext()) {
-                Location where = it.next();
-                Animal animal = field.getAnimalAt(where);
-                // Only eat prey 50% of the time (reduce hunting efficiency)
-                if (rand.nextDouble() < 0.5) {
-                    // Try to find a deer first (more food value)
-                    if(animal instanceof Deer && animal.isAlive()) {
-                        animal.setDead();
-                        eat(DEER_FOOD_VALUE);
-                        return where;
-                    }
-                    else if(animal instanceof Mouse && animal.isAlive()) {
-                        // Check if the mouse is infected
-                        if (animal.isInfected() && Randomizer.getRandom().nextDouble() < PREDATOR_INFECTION_PROBABILITY) {
-                            setInfected();  // 80% chance to get infected
-                        }
-                        animal.setDead();
-                        eat(MOUSE_FOOD_VALUE);
-                        return where;
-                    }
-                }
-            }
-        }
-        return null;
-    }
-    
-    /**
      * Make the bear eat prey.
      * Bears only eat when very hungry (below 25% food level).
      * 
@@ -101,12 +56,17 @@ public class Bear extends Animal
      * @param field The field to place the bear in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Bear young = new Bear(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Bear young = new Bear(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Implementation of abstract methods with behavioral characteristics
+    @Override
+    public int getSpeciesId() {
+        return Species.BEAR;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -129,7 +89,7 @@ public class Bear extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return DEER_FOOD_VALUE;  // Maximum food value from eating a deer
+        return FoodWeb.getFoodValue(Species.BEAR, Species.DEER);  // Maximum food value from eating a deer
     }
     
       @Override
@@ -138,8 +98,8 @@ public class Bear extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return TimeKeeper.isDaytime(); // Dinural (Active during the day)
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return clock.isDaytime(); // Dinural (Active during the day)
     }   
     
     @Override
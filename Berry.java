@@ -5,8 +5,7 @@
  * @version 19.02.25
  */
 public class Berry extends Plant {
-    private static final double GROWTH_PROBABILITY = 0.6; // 60% chance to grow each step
-    private static final double SPREADING_PROBABILITY = 0.3; // 30% chance to spread
+    private static final double SPREADING_PROBABILITY = 0.1; // 10% chance to spread
 
     /**
      * Create a new berry plant
@@ -18,8 +17,8 @@ public class Berry extends Plant {
     }
 
     @Override
-    protected double getGrowthProbability() {
-        return GROWTH_PROBABILITY;
+    public int getSpeciesId() {
+        return Species.BERRY;
     }
 
     @Override
@@ -0,0 +1,430 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Saves the complete state of a simulation between two steps to a
+ * compact binary file, and reads it back.
+ *
+ * The state is the field's animals (species, age, food level, sex and
+ * infection) and plants (species, growth stage and when they grow next),
+ * the growth clocks of the plant species (see GrowthWheel), the step
+ * number, the clock, the weather, the seed and the stripe height. Every
+ * random stream is derived from the seed and the step, so no generator
+ * state needs saving, and a restored simulation continues exactly as the
+ * original would have (with the same stripe height).
+ *
+ * Format (version 2, big-endian):
+ *   header:  int MAGIC, short VERSION, int depth, int width, long seed,
+ *            int step, int stripe rows, byte day, byte month,
+ *            byte daytime, byte raining
+ *   animals: int count, then for each animal in row-major order:
+ *            varint cells skipped since the previous animal, byte species,
+ *            byte flags, varint age, varint food level
+ *   plants:  int count, then for each plant in row-major order:
+ *            varint cells skipped, byte species, byte growth stage,
+ *            and unless mature, double growth due (NaN if not scheduled)
+ *   growth:  int count, then for each plant species:
+ *            byte species, double growth clock
+ * Varints hold 7 bits per byte, low bits first. Version 1 files, which
+ * have no growth data, can still be read; their growing plants are
+ * scheduled afresh.
+ *
+ * The file is written through a FileChannel to a temporary file, which
+ * replaces the checkpoint only once it is complete. A state can also be
+ * encoded in memory on the simulation thread and written elsewhere.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class Checkpoint
+{
+    // "FRSC": foxes-and-rabbits simulation checkpoint.
+    private static final int MAGIC = 0x46525343;
+    public static final int VERSION = 2;
+    // The oldest version that can be read.
+    private static final int OLDEST_VERSION = 1;
+
+    // The size of the buffer between the channel and the records.
+    private static final int BUFFER_SIZE = 1 << 16;
+    // The size of the header, in bytes.
+    private static final int HEADER_SIZE = 34;
+    // Room for the longest record: two bytes and three varints.
+    private static final int MAX_RECORD = 2 + 3 * 5;
+    // The size of the growth clock of a species, in bytes.
+    private static final int GROWTH_RECORD = 1 + 8;
+
+    private final Field field;
+    private final SimulationContext context;
+    private final int stripeRows;
+
+    /**
+     * A restored simulation state.
+     */
+    private Checkpoint(Field field, SimulationContext context, int stripeRows)
+    {
+        this.field = field;
+        this.context = context;
+        this.stripeRows = stripeRows;
+    }
+
+    /**
+     * @return The restored field, with a population of its own.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+
+    /**
+     * @return The restored seed, step, clock and weather.
+     */
+    public SimulationContext getContext()
+    {
+        return context;
+    }
+
+    /**
+     * @return The stripe height the simulation ran with.
+     */
+    public int getStripeRows()
+    {
+        return stripeRows;
+    }
+
+    /**
+     * Save the state of a simulation.
+     * @param file The file to write; it is replaced if it exists.
+     * @param field The current field; it must be compacted (as after a step).
+     * @param context The simulation's context.
+     * @param stripeRows The stripe height the simulation runs with.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(Path file, Field field, SimulationContext context, int stripeRows)
+        throws IOException
+    {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            write(channel, buffer, field, context, stripeRows);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Encode the state of a simulation in memory, so that it can be saved
+     * later (or on another thread) while the simulation runs on.
+     * @param field The current field; it must be compacted (as after a step).
+     * @param context The simulation's context.
+     * @param stripeRows The stripe height the simulation runs with.
+     * @return A buffer holding the encoded state, ready to be read.
+     */
+    public static ByteBuffer encode(Field field, SimulationContext context, int stripeRows)
+    {
+        int records = field.getAnimals().size() + field.getPlants().size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 12 + records * MAX_RECORD
+                                                + Species.COUNT * GROWTH_RECORD);
+        try {
+            write(null, buffer, field, context, stripeRows);
+        }
+        catch(IOException e) {
+            throw new AssertionError("Encoding in memory does not write to a channel", e);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Save a state encoded by encode.
+     * @param file The file to write; it is replaced if it exists.
+     * @param encoded The encoded state; it is read from its position on.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(Path file, ByteBuffer encoded) throws IOException
+    {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Put the state into the buffer, writing the buffer to the channel
+     * whenever it fills up. Without a channel, the buffer must be large
+     * enough for the whole state, and is left holding it.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, Field field,
+                              SimulationContext context, int stripeRows) throws IOException
+    {
+        TimeKeeper clock = context.getClock();
+        buffer.putInt(MAGIC).putShort((short) VERSION);
+        buffer.putInt(field.getDepth()).putInt(field.getWidth());
+        buffer.putLong(context.getSeed()).putInt(context.getStep()).putInt(stripeRows);
+        buffer.put((byte) clock.getCurrentDay()).put((byte) clock.getCurrentMonth());
+        buffer.put((byte) (clock.isDaytime() ? 1 : 0));
+        buffer.put((byte) (context.getWeather().isRaining() ? 1 : 0));
+
+        // Cell indices are row * width + col, which may not fit an int.
+        List<Animal> animals = field.getAnimals();
+        buffer.putInt(animals.size());
+        long previous = -1;
+        for(Animal animal : animals) {
+            long index = indexOf(field, animal.getCell());
+            buffer = ensureRoom(channel, buffer);
+            putVarint(buffer, index - previous - 1);
+            buffer.put((byte) animal.getSpeciesId()).put((byte) animal.getFlags());
+            putVarint(buffer, animal.getAge());
+            putVarint(buffer, animal.getFoodLevel());
+            previous = index;
+        }
+
+        List<Plant> plants = field.getPlants();
+        buffer = ensureRoom(channel, buffer);
+        buffer.putInt(plants.size());
+        previous = -1;
+        for(Plant plant : plants) {
+            long index = indexOf(field, plant.getCell());
+            buffer = ensureRoom(channel, buffer);
+            putVarint(buffer, index - previous - 1);
+            buffer.put((byte) plant.getSpeciesId()).put((byte) plant.getGrowthStage());
+            if(!plant.isMature()) {
+                buffer.putDouble(plant.getGrowthDue());
+            }
+            previous = index;
+        }
+
+        PlantLayer layer = field.getPlantLayer();
+        buffer = ensureRoom(channel, buffer);
+        buffer.putInt(Species.COUNT - Species.FIRST_PLANT);
+        for(int speciesId = Species.FIRST_PLANT; speciesId < Species.COUNT; speciesId++) {
+            buffer = ensureRoom(channel, buffer);
+            buffer.put((byte) speciesId).putDouble(layer.getGrowthClock(speciesId));
+        }
+        if(channel != null) {
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Read a saved simulation state.
+     * @param file The checkpoint file.
+     * @return The restored state.
+     * @throws IOException If the file cannot be read or is not a checkpoint
+     *                     of a version this program can read.
+     */
+    public static Checkpoint load(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            buffer = fill(channel, buffer, HEADER_SIZE);
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a simulation checkpoint");
+            }
+            int version = buffer.getShort();
+            if(version < OLDEST_VERSION || version > VERSION) {
+                throw new IOException(file + " has checkpoint version " + version + ", but only versions "
+                                      + OLDEST_VERSION + " to " + VERSION + " can be read");
+            }
+            int depth = buffer.getInt();
+            int width = buffer.getInt();
+            long seed = buffer.getLong();
+            int step = buffer.getInt();
+            int stripeRows = buffer.getInt();
+            TimeKeeper clock = new TimeKeeper(buffer.get(), buffer.get(), buffer.get() != 0);
+            Weather weather = new Weather(buffer.get() != 0);
+
+            Field field = new Field(depth, width);
+            // Only used by constructors that draw initial values, which are then overwritten.
+            SplittableRandom unused = new SplittableRandom(seed);
+            buffer = fill(channel, buffer, 4);
+            int animals = buffer.getInt();
+            long index = -1;
+            for(int i = 0; i < animals; i++) {
+                buffer = fill(channel, buffer, MAX_RECORD);
+                index += getVarlong(buffer) + 1;
+                int speciesId = buffer.get();
+                int flags = buffer.get();
+                int age = getVarint(buffer);
+                int foodLevel = getVarint(buffer);
+                Location location = new Location((int) (index / width), (int) (index % width));
+                Animal animal = createAnimal(speciesId, field, location, unused);
+                animal.restore(age, foodLevel, flags);
+                field.placeAnimal(animal, location);
+            }
+
+            buffer = fill(channel, buffer, 4);
+            int plants = buffer.getInt();
+            index = -1;
+            for(int i = 0; i < plants; i++) {
+                buffer = fill(channel, buffer, MAX_RECORD);
+                index += getVarlong(buffer) + 1;
+                int speciesId = buffer.get();
+                int growthStage = buffer.get();
+                Location location = new Location((int) (index / width), (int) (index % width));
+                Plant plant = createPlant(speciesId, location);
+                plant.restoreGrowthStage(growthStage);
+                if(version >= 2 && !plant.isMature()) {
+                    plant.setGrowthDue(buffer.getDouble());
+                }
+                field.placePlant(plant, location);
+            }
+
+            if(version >= 2) {
+                buffer = fill(channel, buffer, 4);
+                int clocks = buffer.getInt();
+                for(int i = 0; i < clocks; i++) {
+                    buffer = fill(channel, buffer, GROWTH_RECORD);
+                    int speciesId = buffer.get();
+                    double growthClock = buffer.getDouble();
+                    checkPlantSpecies(speciesId);
+                    field.getPlantLayer().restoreGrowthClock(speciesId, growthClock);
+                }
+            }
+            return new Checkpoint(field, new SimulationContext(seed, step, clock, weather), stripeRows);
+        }
+        catch(BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Create an animal of a saved species.
+     */
+    private static Animal createAnimal(int speciesId, Field field, Location location, SplittableRandom rand)
+        throws IOException
+    {
+        if(!Species.isAnimal(speciesId)) {
+            throw new IOException("Unknown animal species in checkpoint: " + speciesId);
+        }
+        return Species.createAnimal(speciesId, false, field, location, rand);
+    }
+
+    /**
+     * Create a plant of a saved species.
+     */
+    private static Plant createPlant(int speciesId, Location location) throws IOException
+    {
+        checkPlantSpecies(speciesId);
+        return Species.createPlant(speciesId, location, false);
+    }
+
+    /**
+     * Check that a saved species is a plant species.
+     */
+    private static void checkPlantSpecies(int speciesId) throws IOException
+    {
+        if(speciesId < Species.FIRST_PLANT || speciesId >= Species.COUNT) {
+            throw new IOException("Unknown plant species in checkpoint: " + speciesId);
+        }
+    }
+
+    /**
+     * Write the buffer out if it might not hold another record.
+     */
+    private static ByteBuffer ensureRoom(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        if(channel != null && buffer.remaining() < MAX_RECORD) {
+            flush(channel, buffer);
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Write everything put in the buffer to the channel.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Read from the channel until the buffer holds at least the given number
+     * of bytes, or the file ends. Running out of bytes in the middle of a
+     * record shows up when the record is read.
+     */
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if(buffer.remaining() < bytes) {
+            buffer.compact();
+            while(buffer.position() < bytes && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            buffer.flip();
+        }
+        return buffer;
+    }
+
+    /**
+     * Return the row-major index of a cell of a field.
+     */
+    private static long indexOf(Field field, int cell)
+    {
+        return (long) Location.rowOf(cell) * field.getWidth() + Location.colOf(cell);
+    }
+
+    /**
+     * Put a non-negative number as a varint.
+     */
+    private static void putVarint(ByteBuffer buffer, long value)
+    {
+        while((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Get a varint holding a number of cells skipped, which may not fit
+     * an int on a large field.
+     */
+    private static long getVarlong(ByteBuffer buffer) throws IOException
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad number in checkpoint file");
+    }
+
+    /**
+     * Get a varint.
+     */
+    private static int getVarint(ByteBuffer buffer) throws IOException
+    {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Bad number in checkpoint file");
+    }
+}
@@ -1,5 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
+import java.util.random.RandomGenerator;
 
 /**
  * Models a Deer in the ecosystem simulation.
@@ -24,8 +23,6 @@ public class Deer extends Animal
     private static final int MAX_AGE = 12;
     private static final double BREEDING_PROBABILITY = 0.20;
     private static final int MAX_LITTER_SIZE = 4;
-    private static final int GRASS_FOOD_VALUE = 20;
-    private static final int BERRY_FOOD_VALUE = 15;  
     
     /**
      * Create a bear. A bear can be created as a new born (age zero
@@ -33,64 +30,10 @@ public class Deer extends Animal
      * 
      * @param randomAge If true, the bear will have random age and hunger level.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Deer(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
-    }
-    
-    /**
-     * Look for prey adjacent to the current location.
-     * Only the first live prey is eaten.
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if it wasn't.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            
-            // First, check if there are any predators nearby
-            boolean bearNearby = false;
-            for(Location loc : adjacent) {
-                Animal animal = field.getAnimalAt(loc);
-                if(animal instanceof Bear) {
-                    bearNearby = true;
-                    break;
-                }
-            }
-            
-            // If a bear is nearby, skip eating unless very hungry
-            if(bearNearby && getFoodLevel() > GRASS_FOOD_VALUE/2) {
-                return null;
-            }
-            
-            // First try to find grass (preferred food)
-            while(it.hasNext()) {
-                Location where = it.next();
-                Plant plant = field.getPlantAt(where);
-                
-                if(plant instanceof Grass && plant.isAlive()) {
-                    plant.setDead();
-                    eat(GRASS_FOOD_VALUE);
-                    return where;
-                }
-            }
-        
-            // If no grass found, look for berries
-            it = adjacent.iterator();  // Reset iterator
-            while(it.hasNext()) {
-                Location where = it.next();
-                Plant plant = field.getPlantAt(where);
-                
-                if(plant instanceof Berry && plant.isAlive()) {
-                    plant.setDead();
-                    eat(BERRY_FOOD_VALUE);
-                    return where;
-                }
-            }
-        } 
-        return null;
+    public Deer(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
     }
     
     /**
@@ -110,12 +53,17 @@ public class Deer extends Animal
      * @param field The field to place the bear in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Deer young = new Deer(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Deer young = new Deer(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Implementation of abstract methods
+    @Override
+    public int getSpeciesId() {
+        return Species.DEER;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -138,7 +86,7 @@ public class Deer extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return GRASS_FOOD_VALUE;  // Maximum food value from eating a deer
+        return FoodWeb.getFoodValue(Species.DEER, Species.GRASS);  // Maximum food value from eating grass
     }
     
     @Override
@@ -147,8 +95,8 @@ public class Deer extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return TimeKeeper.isDaytime(); //Dinural (Active during the day)
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return clock.isDaytime(); //Dinural (Active during the day)
     }
     
     @Override
@@ -0,0 +1,160 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many headless simulations with different seeds, a few at a time,
+ * and summarises the population of every species at every step over all
+ * the runs: the mean, the standard deviation and the 5%, 50% and 95%
+ * quantiles.
+ *
+ * The counts of each step are added to the summaries as soon as a run
+ * completes the step, and are not kept. Memory therefore grows with the
+ * number of steps and species, not with the number of runs. A run that
+ * stops early because it is no longer viable adds nothing for the
+ * remaining steps; the number of runs behind each summary is printed.
+ *
+ * Usage: java EnsembleRunner [runs] [steps] [size] [first seed] [threads]
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class EnsembleRunner
+{
+    // The quantiles estimated for every step and species.
+    public static final double[] QUANTILES = {0.05, 0.5, 0.95};
+
+    private final int size;
+    private final int steps;
+    // The summaries, indexed by [step][species id]. A run locks the row
+    // of a step while adding its counts.
+    private final StreamingSummary[][] summaries;
+
+    /**
+     * Run an ensemble and print the summaries as CSV.
+     * @param args Optional number of runs, steps, field size, first seed
+     *             and number of threads.
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+        long firstSeed = args.length > 3 ? Long.parseLong(args[3]) : Randomizer.DEFAULT_SEED;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                                      : Runtime.getRuntime().availableProcessors();
+
+        EnsembleRunner ensemble = new EnsembleRunner(size, steps);
+        ensemble.run(firstSeed, runs, threads);
+        ensemble.print(System.out);
+    }
+
+    /**
+     * Create an ensemble of simulations.
+     * @param size The depth and width of the fields.
+     * @param steps The number of steps of each run.
+     */
+    public EnsembleRunner(int size, int steps)
+    {
+        this.size = size;
+        this.steps = steps;
+        summaries = new StreamingSummary[steps + 1][Species.COUNT];
+        for(StreamingSummary[] row : summaries) {
+            for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+                row[speciesId] = new StreamingSummary(QUANTILES);
+            }
+        }
+    }
+
+    /**
+     * Run simulations with the seeds firstSeed, firstSeed + 1, ... and add
+     * them to the summaries. Each simulation runs on a single thread.
+     * @param firstSeed The seed of the first run.
+     * @param runs The number of runs.
+     * @param threads The number of runs at a time.
+     * @throws InterruptedException If interrupted while waiting for the runs.
+     */
+    public void run(long firstSeed, int runs, int threads) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(int run = 0; run < runs; run++) {
+                long seed = firstSeed + run;
+                tasks.add(() -> {
+                    runOne(seed);
+                    return null;
+                });
+            }
+            for(Future<Void> result : executor.invokeAll(tasks)) {
+                try {
+                    result.get();
+                }
+                catch(ExecutionException e) {
+                    throw new IllegalStateException("A run failed", e.getCause());
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Return the summary of a species' population at a step.
+     * @param step The step; 0 is the populated field before the first step.
+     * @param speciesId The species (see Species).
+     * @return The summary.
+     */
+    public StreamingSummary getSummary(int step, int speciesId)
+    {
+        return summaries[step][speciesId];
+    }
+
+    /**
+     * Print the summaries as CSV, one line per step and species.
+     * @param out Where to print.
+     */
+    public void print(PrintStream out)
+    {
+        out.println("step,species,runs,mean,sd,p5,p50,p95");
+        for(int step = 0; step <= steps; step++) {
+            for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+                StreamingSummary summary = summaries[step][speciesId];
+                out.printf("%d,%s,%d,%.2f,%.2f,%.1f,%.1f,%.1f%n", step, Species.getName(speciesId),
+                           summary.getCount(), summary.getMean(), summary.getStandardDeviation(),
+                           summary.getQuantile(0), summary.getQuantile(1), summary.getQuantile(2));
+            }
+        }
+    }
+
+    /**
+     * Run one simulation, adding the counts of every step to the summaries.
+     */
+    private void runOne(long seed)
+    {
+        Simulator simulator = new Simulator(size, size, false);
+        simulator.setSeed(seed);
+        simulator.addListener((context, field, stats) -> record(context.getStep(), field));
+        simulator.reset();
+        simulator.simulate(steps);
+    }
+
+    /**
+     * Add the counts of a field to the summaries of a step.
+     */
+    private void record(int step, Field field)
+    {
+        StreamingSummary[] row = summaries[step];
+        synchronized(row) {
+            for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+                row[speciesId].add(field.getCount(speciesId));
+            }
+        }
+    }
+}
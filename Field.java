@@ -1,40 +1,152 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
 
 /**
 *
 * Represent a rectangular grid of field positions.
 * Each position is able to store a single animal/object.
+*
+* The grid is stored in square chunks of CHUNK_SIZE x CHUNK_SIZE cells.
+* A chunk is only allocated when something is first placed in it, and is
+* freed again once compaction finds it empty, so a large field that is
+* mostly empty only takes memory for the parts that are occupied.
+*
+* The plants are kept in a PlantLayer, which the two fields of a
+* double-buffered pair share: plants stay where they are from one step
+* to the next, and an animal may stand on a plant.
+*
+* Besides the animals themselves, each chunk keeps a bitboard of the cells
+* holding an animal, one word per row, as the plant layer does for plants.
+* Which of the eight cells around a cell are free then takes three words
+* and a few shifts, and a random free neighbour is picked from that mask.
 * @author Hamed Latif & Tuleen Rowaihy
 * @version 20.02.25
 */
 public class Field
 {
-    // A random number generator for providing random locations.
-    private static final Random rand = Randomizer.getRandom();
+    // Row and column offsets of the eight neighbouring cells, in clockwise order.
+    private static final int[] ROW_OFFSETS = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] COL_OFFSETS = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int NEIGHBOURS = ROW_OFFSETS.length;
+    // The neighbours in a 3-cell window of the row above, of the centre's
+    // own row and of the row below, as a mask of directions, indexed by
+    // [row offset + 1][window]. Bit i of a window is column offset i - 1.
+    private static final int[][] WINDOW_DIRECTIONS = new int[3][8];
+    static {
+        for(int direction = 0; direction < NEIGHBOURS; direction++) {
+            for(int window = 0; window < 8; window++) {
+                if((window & 1 << (COL_OFFSETS[direction] + 1)) != 0) {
+                    WINDOW_DIRECTIONS[ROW_OFFSETS[direction] + 1][window] |= 1 << direction;
+                }
+            }
+        }
+    }
+    // A window in which all three cells are taken.
+    private static final int FULL_WINDOW = 0b111;
+    
+    /**
+     * The cell index used for "no cell", e.g. when no free neighbour exists.
+     * Cell indices are packed by Location.cellOf.
+     */
+    public static final int NO_CELL = -1;
+    
+    /**
+     * The largest depth or width of a field. A packed cell index holds
+     * row and column in 16 bits each, and the cell in row and column
+     * 65535 would pack to NO_CELL.
+     */
+    public static final int MAX_SIZE = 65535;
+    
+    // The number of bits of a row or column within a chunk. PlantLayer and
+    // ThreatMap keep their chunks in the same layout, using these constants
+    // and the static helpers below.
+    static final int CHUNK_BITS = 6;
+    /**
+     * The side of a chunk, in cells.
+     */
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
     
     // The dimensions of the field.
     private final int depth, width;
-    // Storage for animals and plants
-    private final Map<Location, Animal> animals = new HashMap<>();
-    private final Map<Location, Plant> plants = new HashMap<>();
+    // The number of chunks across a row of the field.
+    private final int chunksAcross;
+    // The chunks, indexed by (row / CHUNK_SIZE) * chunksAcross + col / CHUNK_SIZE;
+    // null where nothing has been placed.
+    private final Chunk[] chunks;
+    // The chunks that are allocated, one bit per chunk, indexed like chunks.
+    private final long[] allocated;
+    // The state of the animals living in this field.
+    private final Population population;
+    // The plants, shared with the other field of a double-buffered pair.
+    private final PlantLayer plants;
+    // The cells next to predators, built by updateThreats when first needed.
+    private ThreatMap threats;
+    // The cursors handed out by neighbours(), one per thread, reused for every scan.
+    private final ThreadLocal<Neighbourhood> cursors = ThreadLocal.withInitial(Neighbourhood::new);
 
     /**
      * Represent a field of the given dimensions.
+     * Neither dimension may exceed MAX_SIZE.
      * @param depth The depth of the field.
      * @param width The width of the field.
+     * @throws IllegalArgumentException If a dimension exceeds MAX_SIZE.
      */
     public Field(int depth, int width)
     {
+        this(depth, width, new Population(), new PlantLayer(depth, width));
+    }
+
+    /**
+     * Represent a field of the given dimensions whose animals belong to an
+     * existing population and whose plants are in an existing layer, e.g.
+     * the other buffer of a double-buffered pair.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param population The store holding the animals' state.
+     * @param plants The plants of the field.
+     * @throws IllegalArgumentException If a dimension exceeds MAX_SIZE.
+     */
+    public Field(int depth, int width, Population population, PlantLayer plants)
+    {
+        if(depth > MAX_SIZE || width > MAX_SIZE) {
+            throw new IllegalArgumentException("A field can be at most " + MAX_SIZE + " cells on a side: "
+                                               + depth + "x" + width);
+        }
         this.depth = depth;
         this.width = width;
+        this.population = population;
+        this.plants = plants;
+        chunksAcross = chunksAlong(width);
+        chunks = new Chunk[chunksAlong(depth) * chunksAcross];
+        allocated = new long[(chunks.length + 63) >> 6];
     }
 
     /**
      * Place an animal at the given location.
      */
     public void placeAnimal(Animal animal, Location location) {
-        if(animal != null && location != null) {
-            animals.put(location, animal);
+        if(location != null) {
+            placeAnimal(animal, location.toCell());
+        }
+    }
+    
+    /**
+     * Place an animal in the given cell. Any other animal already in the
+     * cell is lost, so it is removed from the population.
+     * @param cell A packed cell index; NO_CELL is ignored.
+     */
+    public void placeAnimal(Animal animal, int cell) {
+        if(animal != null && cell != NO_CELL) {
+            Chunk chunk = allocateChunk(cell);
+            int slot = slotOf(cell);
+            Animal previous = chunk.animals[slot];
+            if(previous != null && previous != animal) {
+                previous.setDead();
+            }
+            chunk.animals[slot] = animal;
+            chunk.taken[Location.rowOf(cell) & CHUNK_MASK] |= 1L << Location.colOf(cell);
         }
     }
     
@@ -42,8 +154,18 @@ public class Field
      * Place a plant at the given location.
      */
     public void placePlant(Plant plant, Location location) {
-        if(plant != null && location != null) {
-            plants.put(location, plant);
+        if(location != null) {
+            placePlant(plant, location.toCell());
+        }
+    }
+    
+    /**
+     * Place a plant in the given cell, replacing any plant already there.
+     * @param cell A packed cell index; NO_CELL is ignored.
+     */
+    public void placePlant(Plant plant, int cell) {
+        if(plant != null && cell != NO_CELL) {
+            plants.place(plant, cell);
         }
     }
     
@@ -51,43 +173,343 @@ public class Field
      * Return the animal at the given location, if any.
      */
     public Animal getAnimalAt(Location location) {
-        return animals.get(location);
+        return getAnimalAt(location.toCell());
+    }
+    
+    /**
+     * Return the animal in the given cell, if any.
+     */
+    public Animal getAnimalAt(int cell) {
+        Chunk chunk = chunkOf(cell);
+        return chunk == null ? null : chunk.animals[slotOf(cell)];
     }
     
     /**
      * Return the plant at the given location, if any.
      */
     public Plant getPlantAt(Location location) {
-        return plants.get(location);
+        return getPlantAt(location.toCell());
+    }
+    
+    /**
+     * Return the plant in the given cell, if any.
+     */
+    public Plant getPlantAt(int cell) {
+        return plants.getPlantAt(Location.rowOf(cell), Location.colOf(cell));
     }
     
     /**
      * Check if a location is free (no animal or plant).
      */
     public boolean isFree(Location location) {
-        return !animals.containsKey(location) && !plants.containsKey(location);
+        return isFree(location.toCell());
+    }
+    
+    /**
+     * Check if a cell is free (no animal or plant).
+     */
+    public boolean isFree(int cell) {
+        return isFree(Location.rowOf(cell), Location.colOf(cell));
+    }
+    
+    /**
+     * Check if the cell in a row and column holds neither an animal nor a
+     * plant.
+     */
+    private boolean isFree(int row, int col) {
+        return (occupancy(row, col, true) & 1L << col) == 0;
+    }
+    
+    /**
+     * Return the cells holding an animal and, if wanted, a plant in the
+     * row of the chunk holding a cell. Bit i stands for column i of the
+     * chunk.
+     */
+    private long occupancy(int row, int col, boolean withPlants) {
+        Chunk chunk = chunks[chunkIndexOf(row, col)];
+        long taken = chunk == null ? 0 : chunk.taken[row & CHUNK_MASK];
+        return withPlants ? taken | plants.getPlanted(row, col & ~CHUNK_MASK) : taken;
+    }
+    
+    /**
+     * Return the window of the three cells from col - 1 to col + 1 in a
+     * row: bit i is set if column col - 1 + i is taken, i.e. outside the
+     * field or holding an animal or, if wanted, a plant.
+     */
+    private int window(int row, int col, boolean withPlants) {
+        if(row < 0 || row >= depth) {
+            return FULL_WINDOW;
+        }
+        int shift = col & CHUNK_MASK;
+        long here = occupancy(row, col, withPlants);
+        if(shift > 0 && shift < CHUNK_MASK && col < width - 1) {
+            return (int) (here >>> (shift - 1)) & FULL_WINDOW;
+        }
+        // The window crosses the edge of the chunk or of the field.
+        int window = (int) (here >>> shift & 1) << 1;
+        if(col == 0) {
+            window |= 1;
+        }
+        else {
+            long left = shift > 0 ? here : occupancy(row, col - 1, withPlants);
+            window |= (int) (left >>> (col - 1)) & 1;
+        }
+        if(col == width - 1) {
+            window |= 4;
+        }
+        else {
+            long right = shift < CHUNK_MASK ? here : occupancy(row, col + 1, withPlants);
+            window |= ((int) (right >>> (col + 1)) & 1) << 2;
+        }
+        return window;
+    }
+    
+    /**
+     * Return the neighbours of a cell that are free, as a mask with bit i
+     * standing for direction i of ROW_OFFSETS and COL_OFFSETS. A neighbour
+     * is free if it is inside the field and holds no animal and, if asked
+     * for, no plant.
+     */
+    private int freeNeighbours(int row, int col, boolean withoutPlant) {
+        int taken = WINDOW_DIRECTIONS[0][window(row - 1, col, withoutPlant)]
+                    | WINDOW_DIRECTIONS[1][window(row, col, withoutPlant)]
+                    | WINDOW_DIRECTIONS[2][window(row + 1, col, withoutPlant)];
+        return ~taken & (1 << NEIGHBOURS) - 1;
+    }
+    
+    /**
+     * Find the next allocated chunk along a row. Cells of chunks that are
+     * not allocated are empty, so a scan over the field can go from one
+     * allocated chunk to the next without looking at the others.
+     * @param row The row.
+     * @param col The column to start from.
+     * @return The first column of the first allocated chunk that holds
+     *         cells of the row at or after col, or the width of the field
+     *         if there is none.
+     */
+    public int nextAllocatedColumn(int row, int col) {
+        return nextAllocatedColumn(allocated, chunksAcross, width, row, col);
+    }
+    
+    /**
+     * @return The number of chunks allocated, a measure of the memory used.
+     */
+    public int getAllocatedChunks() {
+        int allocated = 0;
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+    
+    /**
+     * Return the chunk holding a cell, if it is allocated.
+     */
+    private Chunk chunkOf(int cell) {
+        return chunks[chunkIndexOf(Location.rowOf(cell), Location.colOf(cell))];
+    }
+    
+    /**
+     * Return the chunk holding a cell, allocating it if needed. Stripes
+     * placing into the same chunk from different threads may get here at
+     * the same time, so the allocation is synchronized. Checking for null
+     * outside the lock is safe since a chunk's arrays are final.
+     */
+    private Chunk allocateChunk(int cell) {
+        int index = chunkIndexOf(Location.rowOf(cell), Location.colOf(cell));
+        Chunk chunk = chunks[index];
+        if(chunk == null) {
+            synchronized(chunks) {
+                chunk = chunks[index];
+                if(chunk == null) {
+                    chunk = new Chunk();
+                    chunks[index] = chunk;
+                    allocated[index >> 6] |= 1L << index;
+                }
+            }
+        }
+        return chunk;
+    }
+    
+    /**
+     * Return the index of the chunk holding a cell.
+     */
+    private int chunkIndexOf(int row, int col) {
+        return chunkIndexOf(chunksAcross, row, col);
+    }
+    
+    /**
+     * Return the number of chunks it takes to cover a side of a field.
+     */
+    static int chunksAlong(int cells) {
+        return (cells + CHUNK_MASK) >> CHUNK_BITS;
+    }
+    
+    /**
+     * Return the index of the chunk holding the cell in a row and column,
+     * with the chunks numbered in row-major order.
+     * @param chunksAcross The number of chunks across a row of the field.
+     */
+    static int chunkIndexOf(int chunksAcross, int row, int col) {
+        return (row >> CHUNK_BITS) * chunksAcross + (col >> CHUNK_BITS);
+    }
+    
+    /**
+     * Find the next allocated chunk along a row in a bitset of allocated
+     * chunks, one bit per chunk in row-major order (see
+     * nextAllocatedColumn). The PlantLayer keeps its chunks the same way.
+     */
+    static int nextAllocatedColumn(long[] allocated, int chunksAcross, int width, int row, int col) {
+        int rowStart = (row >> CHUNK_BITS) * chunksAcross;
+        int rowEnd = rowStart + chunksAcross;
+        int index = rowStart + (col >> CHUNK_BITS);
+        while(index < rowEnd) {
+            long bits = allocated[index >> 6] & -1L << index;
+            if(bits != 0) {
+                index = (index & ~63) + Long.numberOfTrailingZeros(bits);
+                return index < rowEnd ? (index - rowStart) << CHUNK_BITS : width;
+            }
+            index = (index | 63) + 1;
+        }
+        return width;
+    }
+    
+    /**
+     * Return the slot of a cell within its chunk.
+     */
+    private static int slotOf(int cell) {
+        return slotOf(Location.rowOf(cell), Location.colOf(cell));
+    }
+    
+    /**
+     * Return the slot of the cell in a row and column within its chunk.
+     */
+    static int slotOf(int row, int col) {
+        return (row & CHUNK_MASK) << CHUNK_BITS | (col & CHUNK_MASK);
+    }
+
+    /**
+     * Start a scan of the cells around a location, beginning at a random
+     * neighbour. The returned cursor is owned by the field and reused by
+     * every call from the same thread, so a thread must finish one scan
+     * before it starts the next.
+     * @param location The centre of the neighbourhood.
+     * @param rand The random stream choosing the first neighbour.
+     * @return The cursor, positioned before the first neighbour.
+     */
+    public Neighbourhood neighbours(Location location, RandomGenerator rand) {
+        return neighbours(location.toCell(), rand);
+    }
+    
+    /**
+     * Start a scan of the cells around a cell. See neighbours(Location).
+     * @param cell The packed index of the centre cell.
+     * @param rand The random stream choosing the first neighbour.
+     * @return The cursor, positioned before the first neighbour.
+     */
+    public Neighbourhood neighbours(int cell, RandomGenerator rand) {
+        return cursors.get().start(Location.rowOf(cell), Location.colOf(cell), rand.nextInt(NEIGHBOURS));
+    }
+    
+    /**
+     * Pick a random free cell next to a location, i.e. one without an
+     * animal. Plants do not take up room for animals.
+     * @param location The centre of the neighbourhood.
+     * @param rand The random stream choosing the cell.
+     * @return A free adjacent location, or null if there is none.
+     */
+    public Location randomFreeNeighbour(Location location, RandomGenerator rand) {
+        int cell = randomFreeNeighbour(location.toCell(), rand);
+        return cell == NO_CELL ? null : Location.ofCell(cell);
+    }
+    
+    /**
+     * Pick a random free cell next to a cell. See randomFreeNeighbour(Location).
+     * @param cell The packed index of the centre cell.
+     * @param rand The random stream choosing the cell.
+     * @return A free adjacent cell, or NO_CELL if there is none.
+     */
+    public int randomFreeNeighbour(int cell, RandomGenerator rand) {
+        return randomNeighbour(cell, rand, false);
+    }
+    
+    /**
+     * Pick a random cell next to a plant where one of its seeds can take
+     * root: one with neither an animal nor a plant.
+     * @param cell The packed index of the plant's cell.
+     * @param rand The random stream choosing the cell.
+     * @return An adjacent cell for a seed, or NO_CELL if there is none.
+     */
+    public int randomSeedCell(int cell, RandomGenerator rand) {
+        return randomNeighbour(cell, rand, true);
+    }
+    
+    /**
+     * Pick a random cell next to a cell without an animal and, if wanted,
+     * without a plant.
+     */
+    private int randomNeighbour(int cell, RandomGenerator rand, boolean withoutPlant) {
+        int row = Location.rowOf(cell);
+        int col = Location.colOf(cell);
+        int rotation = rand.nextInt(NEIGHBOURS);
+        int free = freeNeighbours(row, col, withoutPlant);
+        if(free == 0) {
+            return NO_CELL;
+        }
+        // The first free direction clockwise from the rotation.
+        int rotated = (free >>> rotation | free << (NEIGHBOURS - rotation)) & (1 << NEIGHBOURS) - 1;
+        int direction = (rotation + Integer.numberOfTrailingZeros(rotated)) % NEIGHBOURS;
+        return Location.cellOf(row + ROW_OFFSETS[direction], col + COL_OFFSETS[direction]);
+    }
+    
+    /**
+     * Check whether any cell next to a location is free of animals.
+     * @param location The centre of the neighbourhood.
+     * @return true if at least one adjacent cell is free.
+     */
+    public boolean hasFreeNeighbour(Location location) {
+        return hasFreeNeighbour(location.toCell());
+    }
+    
+    /**
+     * Check whether any cell next to a cell is free of animals.
+     * @param cell The packed index of the centre cell.
+     * @return true if at least one adjacent cell is free.
+     */
+    public boolean hasFreeNeighbour(int cell) {
+        return freeNeighbours(Location.rowOf(cell), Location.colOf(cell), false) != 0;
     }
 
     /**
      * Get a shuffled list of the free adjacent locations.
      * @param location Get locations adjacent to this.
+     * @param rand The random stream used for shuffling.
      * @return A list of free adjacent locations.
      */
-    public List<Location> getFreeAdjacentLocations(Location location) {
+    public List<Location> getFreeAdjacentLocations(Location location, RandomGenerator rand) {
         List<Location> free = new LinkedList<>();
-        List<Location> adjacent = getAdjacentLocations(location);
-        for(Location next : adjacent) {
-            if(isFree(next)) {
-                free.add(next);
+        List<Location> adjacent = getAdjacentLocations(location, rand);
+        if(!adjacent.isEmpty()) {
+            int mask = freeNeighbours(location.row(), location.col(), true);
+            for(Location next : adjacent) {
+                // The direction of the neighbour's window bit in its row.
+                int rowOffset = next.row() - location.row() + 1;
+                int colOffset = next.col() - location.col() + 1;
+                if((mask & WINDOW_DIRECTIONS[rowOffset][1 << colOffset]) != 0) {
+                    free.add(next);
+                }
             }
         }
         return free;
     }
 
     /**
-    * Get adjacent locations.
+    * Get adjacent locations, in random order.
+    * @param rand The random stream used for shuffling.
     */
-    public List<Location> getAdjacentLocations(Location location) {
+    public List<Location> getAdjacentLocations(Location location, RandomGenerator rand) {
         List<Location> locations = new ArrayList<>();
         if(location != null) {
             int row = location.row();
@@ -103,17 +525,153 @@ public class Field
                     }
                 }
             }
-            Collections.shuffle(locations, rand);
+            // Shuffle (Fisher-Yates)
+            for(int i = locations.size() - 1; i > 0; i--) {
+                Collections.swap(locations, i, rand.nextInt(i + 1));
+            }
         }
         return locations;
     }
 
     /**
-     * Clear the field.
+     * Clear the animals from the field. The plants, like the population,
+     * are shared with the other field of a pair, and are cleared with
+     * getPlantLayer().clear(). The chunks stay allocated, as the field is
+     * usually refilled straight away in much the same places; those that
+     * stay empty are freed by the next full compaction.
      */
     public void clear() {
-        animals.clear();
-        plants.clear();
+        for(Chunk chunk : chunks) {
+            if(chunk != null) {
+                Arrays.fill(chunk.animals, null);
+                Arrays.fill(chunk.taken, 0);
+            }
+        }
+    }
+    
+    /**
+     * Remove dead animals and plants from the field, e.g. prey that was
+     * eaten after it had already moved. This is a single pass over the
+     * cells and is meant to be called once at the end of each step.
+     * Chunks left empty are freed.
+     */
+    public void compact() {
+        compact(0, depth);
+        releaseEmptyChunks();
+    }
+    
+    /**
+     * Remove dead animals and plants from a band of rows, and count what
+     * is left in each chunk for releaseEmptyChunks. Bands that do not
+     * overlap can be compacted concurrently.
+     * @param firstRow The first row of the band.
+     * @param endRow The row after the last row of the band.
+     */
+    public void compact(int firstRow, int endRow) {
+        int row = firstRow;
+        while(row < endRow) {
+            // The rows of the band within one row of chunks.
+            int chunkEndRow = Math.min((row | CHUNK_MASK) + 1, endRow);
+            for(int chunkCol = nextAllocatedColumn(row, 0); chunkCol < width;
+                chunkCol = nextAllocatedColumn(row, chunkCol + CHUNK_SIZE)) {
+                Chunk chunk = chunks[chunkIndexOf(row, chunkCol)];
+                int occupied = 0;
+                for(int r = row; r < chunkEndRow; r++) {
+                    int word = r & CHUNK_MASK;
+                    long bits = chunk.taken[word];
+                    while(bits != 0) {
+                        int col = Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        int slot = word << CHUNK_BITS | col;
+                        if(chunk.animals[slot].isAlive()) {
+                            occupied++;
+                        }
+                        else {
+                            chunk.animals[slot] = null;
+                            chunk.taken[word] &= ~(1L << col);
+                        }
+                    }
+                }
+                chunk.occupied.addAndGet(occupied);
+            }
+            row = chunkEndRow;
+        }
+        plants.compact(firstRow, endRow);
+    }
+    
+    /**
+     * Free the chunks that were found empty when every band of the field
+     * was compacted since the last call. Call this on one thread, after
+     * the bands are done.
+     */
+    public void releaseEmptyChunks() {
+        for(int index = 0; index < chunks.length; index++) {
+            Chunk chunk = chunks[index];
+            if(chunk != null && chunk.occupied.getAndSet(0) == 0) {
+                chunks[index] = null;
+                allocated[index >> 6] &= ~(1L << index);
+            }
+        }
+        plants.releaseEmptyChunks();
+    }
+    
+    /**
+     * Return the number of live members of a species. Animals are counted
+     * by the population, which the field shares with its double buffer, so
+     * this is only meaningful for the current field of a simulation.
+     * Plants are counted once they are mature, and dead plants stop being
+     * counted when the field is compacted.
+     * @param speciesId The species (see Species).
+     * @return The number of animals or mature plants of the species.
+     */
+    public int getCount(int speciesId) {
+        return population.getCount(speciesId) + plants.getCount(speciesId);
+    }
+    
+    /**
+     * Return the number of infected animals.
+     * @return The number of infected animals in the population.
+     */
+    public int getInfectedCount() {
+        return population.getInfectedCount();
+    }
+    
+    /**
+     * Mark the cells next to predators, for isThreatened. This is called
+     * at the start of a step, before the animals age, while the live
+     * animals of the population are exactly those in this field.
+     */
+    public void updateThreats() {
+        if(threats == null) {
+            threats = new ThreatMap(depth, width);
+        }
+        threats.update(population);
+    }
+    
+    /**
+     * Tell whether a member of a guild of predators was next to a cell
+     * when updateThreats was last called.
+     * @param cell The packed index of the cell.
+     * @param guild The guild (see FoodWeb).
+     * @return true if the cell was threatened by the guild.
+     */
+    public boolean isThreatened(int cell, int guild) {
+        return threats.isThreatened(cell, guild);
+    }
+    
+    /**
+     * Get the population holding the state of the field's animals.
+     */
+    public Population getPopulation() {
+        return population;
+    }
+    
+    /**
+     * Get the plants of the field, which it shares with the other field
+     * of a double-buffered pair.
+     */
+    public PlantLayer getPlantLayer() {
+        return plants;
     }
     
     /**
@@ -134,14 +692,28 @@ public class Field
      * Get all plants in the field.
      */
     public List<Plant> getPlants() {
-        return new ArrayList<>(plants.values());
+        return plants.getPlants();
     }
     
     /**
      * Get all animals in the field.
      */
     public List<Animal> getAnimals() {
-        return new ArrayList<>(animals.values());
+        List<Animal> present = new ArrayList<>();
+        for(int row = 0; row < depth; row++) {
+            for(int chunkCol = 0; chunkCol < width; chunkCol += CHUNK_SIZE) {
+                Chunk chunk = chunks[chunkIndexOf(row, chunkCol)];
+                if(chunk != null) {
+                    for(int col = chunkCol; col < Math.min(chunkCol + CHUNK_SIZE, width); col++) {
+                        Animal animal = chunk.animals[slotOf(row, col)];
+                        if(animal != null) {
+                            present.add(animal);
+                        }
+                    }
+                }
+            }
+        }
+        return present;
     }
     
     /**
@@ -155,90 +727,192 @@ public class Field
     }
     
     /**
-     * Place grass patches randomly in the field.
-     * @param numPatches number of patches to generate e.g. 15 
-     * @param minSize minimum patch size e.g., 7x7.
-     * @param maxSize maximum patch size e.g., 25x25.
+     * Place the starting clusters of a species at random, as given by
+     * the species registry (see Species).
+     * Plants are placed in square patches with the cluster size as side.
+     * Animals are placed in the free cells of a square holding about the
+     * cluster size.
+     * @param speciesId The species to place.
+     * @param rand The random stream used for sizes, positions and the animals.
      */
-    public void placeRandomGrassPatches(int numPatches, int minSize, int maxSize) {
-        for (int i = 0; i < numPatches; i++) {
-            int patchSize = rand.nextInt(maxSize - minSize + 1) + minSize; // generates a random patch size between the range
-            int startX = rand.nextInt(depth - patchSize);  // gets a random starting position in the field
-            int startY = rand.nextInt(width - patchSize);
-
-            placeGrassPatch(startX, startY, patchSize);   // places the grass patch
+    public void placeRandomClusters(int speciesId, RandomGenerator rand) {
+        placeRandomClusters(speciesId, Species.getClusterCount(speciesId), rand);
+    }
+    
+    /**
+     * Place a number of clusters of a species at random, sized as given
+     * by the species registry. See placeRandomClusters(int, RandomGenerator).
+     * @param speciesId The species to place.
+     * @param numClusters The number of clusters.
+     * @param rand The random stream used for sizes, positions and the animals.
+     */
+    public void placeRandomClusters(int speciesId, int numClusters, RandomGenerator rand) {
+        int minSize = Species.getClusterMinSize(speciesId);
+        int maxSize = Species.getClusterMaxSize(speciesId);
+        boolean isAnimal = Species.isAnimal(speciesId);
+        for (int i = 0; i < numClusters; i++) {
+            int clusterSize = rand.nextInt(maxSize - minSize + 1) + minSize; // Random cluster size
+            if (isAnimal) {
+                int startX = rand.nextInt(depth - 5);  // Ensures clusters stay inside the grid
+                int startY = rand.nextInt(width - 5);
+                placeAnimalCluster(startX, startY, clusterSize, speciesId, rand);
+            } else {
+                int startX = rand.nextInt(depth - clusterSize);  // gets a random starting position in the field
+                int startY = rand.nextInt(width - clusterSize);
+                placePlantPatch(startX, startY, clusterSize, speciesId);
+            }
         }
     }
     
     /**
-     * places a grass patch of given size at a specific location.
+     * places a plant patch of given size at a specific location.
      * @param startX the starting x-coordinate in the field where the patch starts.
      * @param startY the starting y-coordinate in the field where the patch ends.
      * @param patchSize the size of the patch.
+     * @param speciesId The species of plant to place.
      */
-    private void placeGrassPatch(int startX, int startY, int patchSize) {
+    private void placePlantPatch(int startX, int startY, int patchSize, int speciesId) {
         for (int x = startX; x < startX + patchSize; x++) {
             for (int y = startY; y < startY + patchSize; y++) {
                 Location loc = new Location(x, y);
                 if (isWithinBounds(x, y)) {  // only place the patch if it's within the field bounds
-                    placePlant(new Grass(loc, true), loc);
+                    placePlant(Species.createPlant(speciesId, loc, true), loc);
                 }
             }
         }
     }
     
-    /**
-     * Place animal clusters randomly in the field.
-     * @param numClusters Number of clusters to generate (e.g., 6 clusters of bears).
-     * @param minSize Minimum cluster size (e.g., 3 animals).
-     * @param maxSize Maximum cluster size (e.g., 8 animals).
-     * @param animalClass The species to place.
-     */
-    public void placeRandomAnimalClusters(int numClusters, int minSize, int maxSize, Class<?> animalClass) {
-        for (int i = 0; i < numClusters; i++) {
-            int clusterSize = rand.nextInt(maxSize - minSize + 1) + minSize; // Random cluster size
-            int startX = rand.nextInt(depth - 5);  // Ensures clusters stay inside the grid
-            int startY = rand.nextInt(width - 5);
-    
-            placeAnimalCluster(startX, startY, clusterSize, animalClass);
-        }
-    }
-    
     /**
      * Places a cluster of a given animal at a specific location.
      * @param startX The starting x-coordinate in the field where the cluster begins.
      * @param startY The starting y-coordinate in the field where the cluster ends.
      * @param clusterSize The number of animals in the cluster.
-     * @param animalClass The species to place.
+     * @param speciesId The species to place.
+     * @param rand The random stream for the animals' ages and sexes.
      */
-    private void placeAnimalCluster(int startX, int startY, int clusterSize, Class<?> animalClass) {
+    private void placeAnimalCluster(int startX, int startY, int clusterSize, int speciesId,
+                                    RandomGenerator rand) {
         for (int x = startX; x < startX + Math.sqrt(clusterSize); x++) { // Spread animals in a small square
             for (int y = startY; y < startY + Math.sqrt(clusterSize); y++) {
                 Location loc = new Location(x, y);
                 if (isWithinBounds(x, y) && isFree(loc)) {  
-                    placeAnimalByClass(animalClass, loc);
+                    placeAnimal(Species.createAnimal(speciesId, true, this, loc, rand), loc);
                 }
             }
         }
     }
-    
+
     /**
-     * Helper method to create and place an animal based on its class.
-     * @param animalClass The class of the animal.
-     * @param location The location where it should be placed.
+     * A reusable cursor over the cells surrounding a location. It walks the
+     * neighbour offsets from a random starting rotation and skips cells
+     * outside the field, so scanning a neighbourhood allocates nothing.
+     * Typical use:
+     * <pre>
+     *     Field.Neighbourhood around = field.neighbours(location);
+     *     while(around.next()) {
+     *         Animal animal = around.getAnimal();
+     *         ...
+     *     }
+     * </pre>
      */
-    private void placeAnimalByClass(Class<?> animalClass, Location location) {
-        if (animalClass == Bear.class) {
-            placeAnimal(new Bear(true, this, location), location);
-        } else if (animalClass == Deer.class) {
-            placeAnimal(new Deer(true, this, location), location);
-        } else if (animalClass == Mouse.class) {
-            placeAnimal(new Mouse(true, this, location), location);
-        } else if (animalClass == Snake.class) {
-            placeAnimal(new Snake(true, this, location), location);
-        } else if (animalClass == Owl.class) {
-            placeAnimal(new Owl(true, this, location), location);
+    public class Neighbourhood
+    {
+        private int centreRow, centreCol;
+        private int rotation;
+        // How many offsets have been tried so far.
+        private int visited;
+        // The cell the cursor is currently on.
+        private int row, col;
+        // The index of its chunk, and its slot in the chunk.
+        private int chunkIndex, slot;
+
+        /**
+         * Position the cursor before the first neighbour of a cell.
+         */
+        private Neighbourhood start(int centreRow, int centreCol, int rotation) {
+            this.centreRow = centreRow;
+            this.centreCol = centreCol;
+            this.rotation = rotation;
+            restart();
+            return this;
+        }
+
+        /**
+         * Go back to before the first neighbour, keeping the same order.
+         */
+        public void restart() {
+            visited = 0;
+        }
+
+        /**
+         * Move to the next neighbour within the field.
+         * @return false once every neighbour has been visited.
+         */
+        public boolean next() {
+            while(visited < NEIGHBOURS) {
+                int direction = (rotation + visited) % NEIGHBOURS;
+                visited++;
+                row = centreRow + ROW_OFFSETS[direction];
+                col = centreCol + COL_OFFSETS[direction];
+                if(isWithinBounds(row, col)) {
+                    chunkIndex = chunkIndexOf(row, col);
+                    slot = slotOf(row, col);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return The animal in the current cell, if any.
+         */
+        public Animal getAnimal() {
+            Chunk chunk = chunks[chunkIndex];
+            return chunk == null ? null : chunk.animals[slot];
+        }
+
+        /**
+         * @return The plant in the current cell, if any.
+         */
+        public Plant getPlant() {
+            return plants.getPlantAt(row, col);
+        }
+
+        /**
+         * @return true if the current cell holds neither an animal nor a plant.
+         */
+        public boolean isFree() {
+            Chunk chunk = chunks[chunkIndex];
+            return (chunk == null || chunk.animals[slot] == null) && plants.isEmpty(row, col);
+        }
+
+        /**
+         * @return The packed index of the current cell.
+         */
+        public int getCell() {
+            return Location.cellOf(row, col);
+        }
+
+        /**
+         * Create a location for the current cell. Only call this once the
+         * scan has found what it was looking for.
+         * @return The location of the current cell.
+         */
+        public Location getLocation() {
+            return new Location(row, col);
         }
     }
 
+    /**
+     * The animals of a CHUNK_SIZE x CHUNK_SIZE block of cells, indexed by
+     * slotOf.
+     */
+    private static final class Chunk
+    {
+        private final Animal[] animals = new Animal[CHUNK_SIZE * CHUNK_SIZE];
+        // The cells holding an animal, one word per row, bit i for column i.
+        private final long[] taken = new long[CHUNK_SIZE];
+        // The occupants counted by compaction since the last release.
+        private final AtomicInteger occupied = new AtomicInteger();
+    }
 }
@@ -0,0 +1,87 @@
+import java.lang.management.ManagementFactory;
+import java.util.random.RandomGenerator;
+
+/**
+ * A small benchmark comparing the memory the simulator allocates for the
+ * grid when it creates a new Field every step with the double-buffered
+ * approach, where two fields are swapped and the stale one is cleared.
+ * 
+ * Each step moves every animal of the current field into the next one
+ * (the plants stay in the layer both fields share), exactly like
+ * Simulator.simulateOneStep, but without any animal behaviour
+ * so that the numbers show the cost of the grid itself.
+ * 
+ * Usage: java FieldBufferBenchmark [depth] [width] [steps]
+ * 
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class FieldBufferBenchmark
+{
+    // Steps run before measuring, so that the JIT has compiled the loop.
+    private static final int WARMUP_STEPS = 200;
+
+    /**
+     * Run the benchmark in both modes and print the results.
+     * @param args Optional depth, width and number of measured steps.
+     */
+    public static void main(String[] args)
+    {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        System.out.println("Field " + depth + "x" + width + ", " + steps + " steps");
+        report("new Field per step", run(depth, width, steps, false), steps);
+        report("double buffered", run(depth, width, steps, true), steps);
+    }
+
+    /**
+     * Step a populated field for the given number of steps.
+     * @return The number of bytes allocated by this thread while measuring.
+     */
+    private static long run(int depth, int width, int steps, boolean doubleBuffered)
+    {
+        Field field = new Field(depth, width);
+        Field spareField = new Field(depth, width, field.getPopulation(), field.getPlantLayer());
+        RandomGenerator rand = Randomizer.forStep(Randomizer.DEFAULT_SEED, 0);
+        field.placeRandomClusters(Species.GRASS, rand);
+        field.placeRandomClusters(Species.MOUSE, rand);
+        field.placeRandomClusters(Species.DEER, rand);
+
+        long before = 0;
+        for(int step = 0; step < WARMUP_STEPS + steps; step++) {
+            if(step == WARMUP_STEPS) {
+                before = allocatedBytes();
+            }
+            Field nextField = doubleBuffered ? spareField
+                                             : new Field(depth, width, field.getPopulation(),
+                                                         field.getPlantLayer());
+            for(Animal animal : field.getAnimals()) {
+                nextField.placeAnimal(animal, animal.getCell());
+            }
+            nextField.compact();
+            spareField = field;
+            spareField.clear();
+            field = nextField;
+        }
+        return allocatedBytes() - before;
+    }
+
+    /**
+     * Print the allocation figures for one mode.
+     */
+    private static void report(String mode, long bytes, int steps)
+    {
+        System.out.printf("%-20s %,15d bytes total %,12d bytes/step%n", mode, bytes, bytes / steps);
+    }
+
+    /**
+     * @return The total number of bytes allocated so far by the current thread.
+     */
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,180 @@
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * An image of the field that is updated from SimulationFrames by writing
+ * pixels straight into the image's int[] raster.
+ *
+ * Every cell is a square of cellSize pixels. For each possible cell value
+ * of a frame (see SimulationFrame) the pixels of such a square are worked
+ * out once, from a palette of colors indexed by species id, so drawing a
+ * cell is a copy of a few short rows. The raster remembers the value it
+ * last drew in every cell and only redraws the cells whose value has
+ * changed, keeping the bounding box of those cells so that only that part
+ * of the screen needs repainting.
+ *
+ * Not thread-safe: use it on one thread only (the Swing event thread).
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class FieldRaster
+{
+    // Colors used for empty locations.
+    private static final Color EMPTY_COLOR = Color.white;
+    // Color used for objects that have no defined color.
+    private static final Color UNKNOWN_COLOR = Color.gray;
+    // The border of an infected animal.
+    private static final Color INFECTED_COLOR = Color.red;
+    // The number of different cell values a frame can hold.
+    private static final int VALUES = 128;
+    // A value no cell can have, used to force a cell to be redrawn.
+    private static final byte UNDRAWN = -1;
+
+    private final int depth, width, cellSize;
+    private final BufferedImage image;
+    private final int[] pixels;
+    // The colors of the species, indexed by species id.
+    private final Color[] colors = new Color[Species.COUNT];
+    // The pixels of a cell for each cell value, row by row.
+    private final int[][] tiles = new int[VALUES][];
+    // The value last drawn in each cell.
+    private final byte[] shown;
+    // The cells changed by the last update: rows top to bottom and
+    // columns left to right, each end exclusive.
+    private int dirtyTop, dirtyBottom, dirtyLeft, dirtyRight;
+
+    /**
+     * Create an empty raster.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param cellSize The width and height of a cell in pixels.
+     */
+    public FieldRaster(int depth, int width, int cellSize)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.cellSize = cellSize;
+        image = new BufferedImage(width * cellSize, depth * cellSize, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, EMPTY_COLOR.getRGB());
+        shown = new byte[depth * width];
+        makeTiles();
+    }
+
+    /**
+     * Define the color of a species. All cells are redrawn at the next update.
+     * @param speciesId The species (see Species).
+     * @param color The color of the species.
+     */
+    public void setColor(int speciesId, Color color)
+    {
+        colors[speciesId] = color;
+        makeTiles();
+        Arrays.fill(shown, UNDRAWN);
+    }
+
+    /**
+     * Draw the cells that differ from the last frame drawn.
+     * @param frame The frame to draw; it must have the size of the raster.
+     * @return true if any cell changed.
+     */
+    public boolean update(SimulationFrame frame)
+    {
+        dirtyTop = depth;
+        dirtyBottom = 0;
+        dirtyLeft = width;
+        dirtyRight = 0;
+        int index = 0;
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                int value = frame.getCell(row, col);
+                if(shown[index] != value) {
+                    shown[index] = (byte) value;
+                    drawCell(row, col, tiles[value]);
+                    dirtyTop = Math.min(dirtyTop, row);
+                    dirtyBottom = row + 1;
+                    dirtyLeft = Math.min(dirtyLeft, col);
+                    dirtyRight = Math.max(dirtyRight, col + 1);
+                }
+                index++;
+            }
+        }
+        return dirtyTop < dirtyBottom;
+    }
+
+    /**
+     * @return The part of the image changed by the last update, in pixels;
+     *         empty if nothing changed.
+     */
+    public Rectangle getDirtyBounds()
+    {
+        if(dirtyTop >= dirtyBottom) {
+            return new Rectangle();
+        }
+        return new Rectangle(dirtyLeft * cellSize, dirtyTop * cellSize,
+                             (dirtyRight - dirtyLeft) * cellSize, (dirtyBottom - dirtyTop) * cellSize);
+    }
+
+    /**
+     * @return The image of the field.
+     */
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+
+    /**
+     * Copy the pixels of a tile into a cell.
+     */
+    private void drawCell(int row, int col, int[] tile)
+    {
+        int rowStride = width * cellSize;
+        int offset = row * cellSize * rowStride + col * cellSize;
+        for(int y = 0; y < cellSize; y++) {
+            System.arraycopy(tile, y * cellSize, pixels, offset, cellSize);
+            offset += rowStride;
+        }
+    }
+
+    /**
+     * Work out the pixels of a cell for every cell value. A cell is
+     * filled with its color except for a one pixel gap on the right and
+     * bottom; an infected animal has a red border instead of the gap.
+     */
+    private void makeTiles()
+    {
+        int empty = EMPTY_COLOR.getRGB();
+        for(int value = 0; value < VALUES; value++) {
+            boolean infected = (value & SimulationFrame.INFECTED) != 0;
+            int speciesId = (value & ~SimulationFrame.INFECTED) - 1;
+            int color;
+            if(value == SimulationFrame.EMPTY) {
+                color = empty;
+            }
+            else if(speciesId >= 0 && speciesId < Species.COUNT && colors[speciesId] != null) {
+                color = colors[speciesId].getRGB();
+            }
+            else {
+                color = UNKNOWN_COLOR.getRGB();
+            }
+            int[] tile = new int[cellSize * cellSize];
+            for(int y = 0; y < cellSize; y++) {
+                for(int x = 0; x < cellSize; x++) {
+                    boolean edge = cellSize > 1 && (x == cellSize - 1 || y == cellSize - 1);
+                    boolean border = x == 0 || y == 0 || x == cellSize - 1 || y == cellSize - 1;
+                    if(infected && border && cellSize > 1) {
+                        tile[y * cellSize + x] = INFECTED_COLOR.getRGB();
+                    }
+                    else {
+                        tile[y * cellSize + x] = edge ? empty : color;
+                    }
+                }
+            }
+            tiles[value] = tile;
+        }
+    }
+}
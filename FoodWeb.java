@@ -0,0 +1,176 @@
+import java.util.Arrays;
+
+/**
+ * The food web of the simulation: who eats whom, and how.
+ *
+ * For every pair of an eater and a food species the web holds:
+ * - the food value gained from eating it;
+ * - the preference, 0 for the most preferred food, then 1, 2, ...;
+ * - the chance that an attempt to eat it succeeds;
+ * - the chance that eating it while it is infected infects the eater.
+ * It groups predators into guilds, which ThreatMap tracks. For prey it
+ * also holds the guild of predators it keeps away from, and the food
+ * level above which it would rather not eat near them.
+ *
+ * Animal.findFood evaluates these tables for every species, so adding a
+ * species means adding its rows here rather than new code.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class FoodWeb
+{
+    // The preference of something that is not food.
+    public static final int NOT_FOOD = Integer.MAX_VALUE;
+    // The guild of a species that fears no predator.
+    public static final int NO_GUILD = -1;
+    // The guilds of predators, as feared by deer, lizards and mice respectively.
+    public static final int BEARS = 0;
+    public static final int OWLS_AND_SNAKES = 1;
+    public static final int ALL_PREDATORS = 2;
+    // The number of guilds.
+    public static final int GUILDS = 3;
+
+    // The tables, indexed by eater * Species.COUNT + food.
+    private static final int[] FOOD_VALUES = new int[Species.COUNT * Species.COUNT];
+    private static final int[] PREFERENCES = new int[Species.COUNT * Species.COUNT];
+    private static final double[] SUCCESS = new double[Species.COUNT * Species.COUNT];
+    private static final double[] TRANSMISSION = new double[Species.COUNT * Species.COUNT];
+    // Whether any food of a species can escape, indexed by eater.
+    private static final boolean[] UNCERTAIN = new boolean[Species.COUNT];
+    // The guilds each species belongs to, as a bit mask.
+    private static final int[] GUILDS_OF = new int[Species.COUNT];
+    // The guild each species keeps away from, and from which food level.
+    private static final int[] FEARED_GUILDS = new int[Species.COUNT];
+    private static final int[] CAUTION_LEVELS = new int[Species.COUNT];
+
+    static {
+        Arrays.fill(PREFERENCES, NOT_FOOD);
+        Arrays.fill(FEARED_GUILDS, NO_GUILD);
+
+        //   eater           food            value  preference  success  transmission
+        eats(Species.BEAR,   Species.DEER,   60,    0,          0.5,     0);
+        eats(Species.BEAR,   Species.MOUSE,  25,    1,          0.5,     0.8);
+        eats(Species.OWL,    Species.LIZARD, 30,    0,          0.5,     0);
+        eats(Species.OWL,    Species.MOUSE,  25,    1,          0.5,     0.8);
+        eats(Species.SNAKE,  Species.LIZARD, 25,    0,          0.5,     0);
+        eats(Species.SNAKE,  Species.MOUSE,  20,    1,          0.5,     0.8);
+        eats(Species.DEER,   Species.GRASS,  20,    0,          1,       0);
+        eats(Species.DEER,   Species.BERRY,  15,    1,          1,       0);
+        eats(Species.MOUSE,  Species.BERRY,  15,    0,          1,       0);
+        eats(Species.LIZARD, Species.BERRY,  30,    0,          1,       0);
+
+        //      guild            members
+        guild(BEARS,           Species.BEAR);
+        guild(OWLS_AND_SNAKES, Species.OWL, Species.SNAKE);
+        guild(ALL_PREDATORS,   Species.BEAR, Species.OWL, Species.SNAKE);
+
+        //     prey            guild            caution level
+        avoids(Species.DEER,   BEARS,           10);
+        avoids(Species.MOUSE,  ALL_PREDATORS,   7);
+        avoids(Species.LIZARD, OWLS_AND_SNAKES, 15);
+    }
+
+    /**
+     * @return The food value of a food to an eater, or 0 if it is not food.
+     */
+    public static int getFoodValue(int eater, int food)
+    {
+        return FOOD_VALUES[eater * Species.COUNT + food];
+    }
+
+    /**
+     * @return The eater's preference for a food (lower is preferred),
+     *         or NOT_FOOD.
+     */
+    public static int getPreference(int eater, int food)
+    {
+        return PREFERENCES[eater * Species.COUNT + food];
+    }
+
+    /**
+     * @return The chance that an attempt by the eater to eat the food succeeds.
+     */
+    public static double getSuccess(int eater, int food)
+    {
+        return SUCCESS[eater * Species.COUNT + food];
+    }
+
+    /**
+     * @return The chance that eating the food while it is infected
+     *         infects the eater.
+     */
+    public static double getTransmission(int eater, int food)
+    {
+        return TRANSMISSION[eater * Species.COUNT + food];
+    }
+
+    /**
+     * @return Whether some attempts of the eater to eat can fail, in
+     *         which case a chance is drawn for every cell it looks at.
+     */
+    public static boolean isUncertain(int eater)
+    {
+        return UNCERTAIN[eater];
+    }
+
+    /**
+     * @return The guilds the species belongs to, as a bit mask with bit
+     *         1 << guild set for each, or 0 for a species in no guild.
+     */
+    public static int getGuilds(int speciesId)
+    {
+        return GUILDS_OF[speciesId];
+    }
+
+    /**
+     * @return The guild of predators the species keeps away from (see
+     *         ThreatMap), or NO_GUILD.
+     */
+    public static int getFearedGuild(int prey)
+    {
+        return FEARED_GUILDS[prey];
+    }
+
+    /**
+     * @return The food level above which the species does not eat when
+     *         its feared guild is nearby.
+     */
+    public static int getCautionLevel(int prey)
+    {
+        return CAUTION_LEVELS[prey];
+    }
+
+    /**
+     * Add a food to the web.
+     */
+    private static void eats(int eater, int food, int value, int preference,
+                             double success, double transmission)
+    {
+        int index = eater * Species.COUNT + food;
+        FOOD_VALUES[index] = value;
+        PREFERENCES[index] = preference;
+        SUCCESS[index] = success;
+        TRANSMISSION[index] = transmission;
+        UNCERTAIN[eater] |= success < 1;
+    }
+
+    /**
+     * Make species members of a guild of predators.
+     */
+    private static void guild(int guild, int... members)
+    {
+        for(int speciesId : members) {
+            GUILDS_OF[speciesId] |= 1 << guild;
+        }
+    }
+
+    /**
+     * Make a species keep away from a guild of predators.
+     */
+    private static void avoids(int prey, int guild, int cautionLevel)
+    {
+        FEARED_GUILDS[prey] = guild;
+        CAUTION_LEVELS[prey] = cautionLevel;
+    }
+}
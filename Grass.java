@@ -6,8 +6,7 @@
  * @version 20.02.25
  */
 public class Grass extends Plant {
-    private static final double GROWTH_PROBABILITY = 0.70; // 70% chance to grow each step
-    private static final double SPREADING_PROBABILITY = 0.50; // 50% chance to spread
+    private static final double SPREADING_PROBABILITY = 0.10; // 10% chance to spread
 
     /**
      * Create a new grass plant
@@ -19,8 +18,8 @@ public class Grass extends Plant {
     }
 
     @Override
-    protected double getGrowthProbability() {
-        return GROWTH_PROBABILITY;
+    public int getSpeciesId() {
+        return Species.GRASS;
     }
 
     @Override
@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The plants of one species that are waiting to grow to their next stage,
+ * identified by their cells.
+ *
+ * A plant grows in a step with a chance p that depends on the season,
+ * the weather and the time of day. Rather than drawing that chance for
+ * every plant in every step, the wheel keeps a clock of the hazard the
+ * species has been exposed to, which moves on by -ln(1 - p) each step.
+ * A waiting plant draws a budget from the exponential distribution once
+ * and grows in the first step in which the clock passes the clock it
+ * was scheduled at plus its budget. This grows a plant in each step with
+ * exactly the chance p, however p changes from step to step, so nothing
+ * has to be drawn again when the season or the weather changes.
+ *
+ * The plants are kept in a ring of buckets, each covering a fixed range
+ * of the clock, so a step only looks at the buckets the clock passes.
+ * The few plants due further ahead than the ring reaches wait in a list
+ * of their own until the ring comes round to them.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class GrowthWheel
+{
+    // The number of buckets per unit of hazard, and in the ring.
+    private static final int BUCKETS_PER_UNIT = 16;
+    private static final int BUCKETS = 256;
+
+    // The chance that a plant grows in a step, before any modifier.
+    private final double growthProbability;
+    // The cells of the plants of each bucket and when they are due, in hazard.
+    private final int[][] cells = new int[BUCKETS][];
+    private final double[][] dues = new double[BUCKETS][];
+    private final int[] sizes = new int[BUCKETS];
+    // The plants due beyond the reach of the ring.
+    private final List<Integer> farCells = new ArrayList<>();
+    private final List<Double> farDues = new ArrayList<>();
+    // The hazard so far, and the number of the bucket it falls in.
+    private double clock;
+    private long current;
+    // The number of plants waiting.
+    private int waiting;
+    // The cells of the plants that grow in a step, and how many there are.
+    private int[] grown = new int[16];
+    private int grownCount;
+
+    /**
+     * Create an empty wheel.
+     * @param growthProbability The chance that a plant of the species
+     *                          grows in a step, before any modifier.
+     */
+    public GrowthWheel(double growthProbability)
+    {
+        this.growthProbability = growthProbability;
+        for(int bucket = 0; bucket < BUCKETS; bucket++) {
+            cells[bucket] = new int[4];
+            dues[bucket] = new double[4];
+        }
+    }
+
+    /**
+     * Make a plant wait for its next stage.
+     * @param cell The plant's cell.
+     * @param due The clock at which it grows: the clock now plus a budget
+     *            drawn from the exponential distribution with mean 1.
+     */
+    public void schedule(int cell, double due)
+    {
+        add(cell, due);
+        waiting++;
+    }
+
+    /**
+     * @return The hazard the species has been exposed to so far.
+     */
+    public double getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * Set the clock to a saved value (see Checkpoint). This must be done
+     * before any plant is scheduled.
+     * @param clock The saved clock.
+     */
+    public void restoreClock(double clock)
+    {
+        this.clock = clock;
+        current = bucketOf(clock);
+    }
+
+    /**
+     * Move the clock on by one step and find the plants that grow in it.
+     * @param modifier The factor on the growth probability in the step.
+     * @return The cells of the plants that grow, in no particular order.
+     */
+    public int[] advance(double modifier)
+    {
+        grownCount = 0;
+        double chance = growthProbability * modifier;
+        if(chance <= 0 || waiting == 0) {
+            return new int[0];
+        }
+        if(chance >= 1) {
+            // Every plant grows; the clock can stay where it is.
+            for(int bucket = 0; bucket < BUCKETS; bucket++) {
+                for(int i = 0; i < sizes[bucket]; i++) {
+                    addGrown(cells[bucket][i]);
+                }
+                sizes[bucket] = 0;
+            }
+            for(int cell : farCells) {
+                addGrown(cell);
+            }
+            farCells.clear();
+            farDues.clear();
+            waiting = 0;
+            return Arrays.copyOf(grown, grownCount);
+        }
+        clock -= Math.log1p(-chance);
+        long last = bucketOf(clock);
+        // The buckets from the current one up to the one the clock is in;
+        // the ring holds nothing beyond BUCKETS buckets ahead.
+        for(long number = current; number <= Math.min(last, current + BUCKETS - 1); number++) {
+            collect((int) (number % BUCKETS));
+        }
+        current = last;
+        for(int i = farCells.size() - 1; i >= 0; i--) {
+            double due = farDues.get(i);
+            if(due <= clock || bucketOf(due) - current < BUCKETS) {
+                int cell = farCells.remove(i);
+                farDues.remove(i);
+                if(due <= clock) {
+                    addGrown(cell);
+                    waiting--;
+                }
+                else {
+                    add(cell, due);
+                }
+            }
+        }
+        return Arrays.copyOf(grown, grownCount);
+    }
+
+    /**
+     * Move the plants of a bucket that are due to the grown cells,
+     * keeping the others in order.
+     */
+    private void collect(int bucket)
+    {
+        int[] inBucket = cells[bucket];
+        double[] duesInBucket = dues[bucket];
+        int kept = 0;
+        for(int i = 0; i < sizes[bucket]; i++) {
+            if(duesInBucket[i] <= clock) {
+                addGrown(inBucket[i]);
+                waiting--;
+            }
+            else {
+                inBucket[kept] = inBucket[i];
+                duesInBucket[kept] = duesInBucket[i];
+                kept++;
+            }
+        }
+        sizes[bucket] = kept;
+    }
+
+    /**
+     * Put a plant in the bucket it is due in, or with the far plants.
+     */
+    private void add(int cell, double due)
+    {
+        long number = bucketOf(due);
+        if(number - current >= BUCKETS) {
+            farCells.add(cell);
+            farDues.add(due);
+            return;
+        }
+        int bucket = (int) (number % BUCKETS);
+        int size = sizes[bucket];
+        if(size == cells[bucket].length) {
+            cells[bucket] = Arrays.copyOf(cells[bucket], size * 2);
+            dues[bucket] = Arrays.copyOf(dues[bucket], size * 2);
+        }
+        cells[bucket][size] = cell;
+        dues[bucket][size] = due;
+        sizes[bucket] = size + 1;
+    }
+
+    /**
+     * Add a cell to the cells of the plants that grow in this step.
+     */
+    private void addGrown(int cell)
+    {
+        if(grownCount == grown.length) {
+            grown = Arrays.copyOf(grown, grownCount * 2);
+        }
+        grown[grownCount++] = cell;
+    }
+
+    /**
+     * Return the number of the bucket a point of the clock falls in.
+     */
+    private static long bucketOf(double hazard)
+    {
+        return (long) (hazard * BUCKETS_PER_UNIT);
+    }
+}
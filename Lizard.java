@@ -1,5 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
+import java.util.random.RandomGenerator;
 
 /**
  * Models a Lizard in the ecosystem simulation.
@@ -24,7 +23,6 @@ public class Lizard extends Animal
     private static final int MAX_AGE = 7;
     private static final double BREEDING_PROBABILITY = 0.30;
     private static final int MAX_LITTER_SIZE = 1;
-    private static final int BERRY_FOOD_VALUE = 30;  
     private static final boolean NOCTURNAL = false; 
     
      /**
@@ -33,53 +31,10 @@ public class Lizard extends Animal
      * @param randomAge If true, starts with random age and hunger.
      * @param field The field currently being used.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Lizard(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
-    }
-    
-    /**
-     * Look for food around the lizard.
-     * Checks for predators before feeding and only eats berries.
-     * Will skip eating to avoid predators unless very hungry.
-     * 
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if none found.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            
-            // First, check if there are any predators nearby
-            boolean dangerNearby = false;
-            for(Location loc : adjacent) {
-                Animal animal = field.getAnimalAt(loc);
-                if(animal instanceof Owl || animal instanceof Snake) {
-                    dangerNearby = true;
-                    break;
-                }
-            }
-            
-            // If danger is nearby, mice might skip eating to move to safety
-            if(dangerNearby && getFoodLevel() > BERRY_FOOD_VALUE/2) {
-                return null;
-            }
-            
-            // Look for food if hungry enough or no danger
-            while(it.hasNext()) {
-                Location where = it.next();
-                Plant plant = field.getPlantAt(where);
-                
-                if(plant instanceof Berry && plant.isAlive()) {
-                    plant.setDead();
-                    eat(BERRY_FOOD_VALUE);
-                    return where;
-                }
-            }
-        }
-        return null;
+    public Lizard(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
     }
     
     /**
@@ -102,14 +57,14 @@ public class Lizard extends Animal
      * @param field The field to place the bear in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Lizard young = new Lizard(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Lizard young = new Lizard(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Special methods for asexual reproduction
     @Override
-    protected boolean canFindMate(Field field) {
+    protected boolean canFindMate(Field field, RandomGenerator rand) {
         return true;  // No mate needed
     }
     
@@ -118,6 +73,11 @@ public class Lizard extends Animal
         return false;
     }
     // Implementation of abstract methods with behavioral characteristics
+    @Override
+    public int getSpeciesId() {
+        return Species.LIZARD;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -140,7 +100,7 @@ public class Lizard extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return BERRY_FOOD_VALUE;  //
+        return FoodWeb.getFoodValue(Species.LIZARD, Species.BERRY);  // Maximum food value from eating a berry
     }
     
     @Override
@@ -149,8 +109,8 @@ public class Lizard extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return TimeKeeper.isDaytime(); // Active during the day
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return clock.isDaytime(); // Active during the day
     }
     
     @Override
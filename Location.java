@@ -1,10 +1,61 @@
 /**
  * Represent a location in a rectangular grid.
+ * 
+ * A location can also be packed into a single int "cell index", with the
+ * row in the upper 16 bits and the column in the lower 16 bits. The hot
+ * paths of the simulation pass cell indices around instead of Location
+ * records; a record is only created where one is really needed.
  *
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public record Location(int row, int col) 
 {
-    //
+    // The number of low bits holding the column of a packed cell index.
+    private static final int COL_BITS = 16;
+    private static final int COL_MASK = (1 << COL_BITS) - 1;
+
+    /**
+     * Pack a row and column into a cell index.
+     * Both must be between 0 and 65535.
+     * @return The packed cell index.
+     */
+    public static int cellOf(int row, int col)
+    {
+        return (row << COL_BITS) | col;
+    }
+
+    /**
+     * @return The row of a packed cell index.
+     */
+    public static int rowOf(int cell)
+    {
+        return cell >>> COL_BITS;
+    }
+
+    /**
+     * @return The column of a packed cell index.
+     */
+    public static int colOf(int cell)
+    {
+        return cell & COL_MASK;
+    }
+
+    /**
+     * Create the location of a packed cell index.
+     * @param cell A packed cell index.
+     * @return The location of the cell.
+     */
+    public static Location ofCell(int cell)
+    {
+        return new Location(rowOf(cell), colOf(cell));
+    }
+
+    /**
+     * @return This location packed into a cell index.
+     */
+    public int toCell()
+    {
+        return cellOf(row, col);
+    }
 }
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a metrics file written by MetricsRecorder by mapping it into
+ * memory, so that analysis code can scan the metrics of millions of
+ * steps without reading or parsing them first.
+ *
+ * Steps are numbered by their position in the file, from 0. Blocks are
+ * mapped in groups of up to 1 GB.
+ *
+ * Usage: java MetricsReader <metrics file>
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class MetricsReader
+{
+    // The number of blocks mapped together.
+    private static final int BLOCKS_PER_MAPPING = (1 << 30) / MetricsRecorder.BLOCK_SIZE;
+
+    private final ByteBuffer[] mappings;
+    private final int size;
+
+    /**
+     * Map a metrics file.
+     * @param file The metrics file.
+     * @throws IOException If the file cannot be read or is not a metrics
+     *                     file of a version this program can read.
+     */
+    public MetricsReader(Path file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MetricsRecorder.HEADER_SIZE);
+            while(header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            header.flip();
+            if(header.remaining() < MetricsRecorder.HEADER_SIZE || header.getInt() != MetricsRecorder.MAGIC) {
+                throw new IOException(file + " is not a metrics file");
+            }
+            int version = header.getShort();
+            if(version != MetricsRecorder.VERSION) {
+                throw new IOException(file + " has metrics version " + version
+                                      + ", but only version " + MetricsRecorder.VERSION + " can be read");
+            }
+            if(header.getShort() != Species.COUNT || header.getInt() != MetricsRecorder.BLOCK_STEPS) {
+                throw new IOException(file + " was written with a different set of species or block size");
+            }
+
+            long blocks = (channel.size() - MetricsRecorder.HEADER_SIZE) / MetricsRecorder.BLOCK_SIZE;
+            mappings = new ByteBuffer[(int) ((blocks + BLOCKS_PER_MAPPING - 1) / BLOCKS_PER_MAPPING)];
+            for(int i = 0; i < mappings.length; i++) {
+                long first = (long) i * BLOCKS_PER_MAPPING;
+                long count = Math.min(BLOCKS_PER_MAPPING, blocks - first);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                          MetricsRecorder.HEADER_SIZE + first * MetricsRecorder.BLOCK_SIZE,
+                                          count * MetricsRecorder.BLOCK_SIZE);
+            }
+            // Only the last block may be partly filled.
+            long steps = 0;
+            if(blocks > 0) {
+                int lastRows = mappings[mappings.length - 1]
+                    .getInt((int) ((blocks - 1) % BLOCKS_PER_MAPPING) * MetricsRecorder.BLOCK_SIZE);
+                steps = (blocks - 1) * MetricsRecorder.BLOCK_STEPS + lastRows;
+            }
+            if(steps > Integer.MAX_VALUE) {
+                throw new IOException(file + " holds too many steps");
+            }
+            size = (int) steps;
+        }
+    }
+
+    /**
+     * @return The number of steps in the file.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return The number of the step.
+     */
+    public int getStep(int index)
+    {
+        return blockOf(index).getInt(offsetOf(index, MetricsRecorder.STEP_COLUMN, 4));
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @param speciesId The species (see Species).
+     * @return The number of living animals or mature plants of the species.
+     */
+    public int getCount(int index, int speciesId)
+    {
+        int column = MetricsRecorder.COUNT_COLUMNS + 4 * MetricsRecorder.BLOCK_STEPS * speciesId;
+        return blockOf(index).getInt(offsetOf(index, column, 4));
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return The number of infected animals.
+     */
+    public int getInfectedCount(int index)
+    {
+        return blockOf(index).getInt(offsetOf(index, MetricsRecorder.INFECTED_COLUMN, 4));
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return The month of the step (0-11).
+     */
+    public int getMonth(int index)
+    {
+        return blockOf(index).get(offsetOf(index, MetricsRecorder.MONTH_COLUMN, 1));
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return The season of the step (see Season).
+     */
+    public String getSeason(int index)
+    {
+        return Season.getSeason(getMonth(index));
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return Whether it rained during the step.
+     */
+    public boolean isRaining(int index)
+    {
+        return blockOf(index).get(offsetOf(index, MetricsRecorder.RAINING_COLUMN, 1)) != 0;
+    }
+
+    /**
+     * @param index The position of the step in the file.
+     * @return How long the step took to compute, in nanoseconds.
+     */
+    public long getStepNanos(int index)
+    {
+        return blockOf(index).getLong(offsetOf(index, MetricsRecorder.NANOS_COLUMN, 8));
+    }
+
+    /**
+     * Print a summary of a metrics file: the number of steps, the mean
+     * step time and the lowest, mean and highest count of every species.
+     * @param args The metrics file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1) {
+            System.out.println("Usage: java MetricsReader <metrics file>");
+            return;
+        }
+        MetricsReader reader = new MetricsReader(Paths.get(args[0]));
+        int steps = reader.size();
+        long nanos = 0;
+        for(int index = 0; index < steps; index++) {
+            nanos += reader.getStepNanos(index);
+        }
+        System.out.printf("%d steps, %.3f ms per step%n", steps, steps == 0 ? 0.0 : nanos / 1e6 / steps);
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            int min = Integer.MAX_VALUE;
+            int max = 0;
+            long sum = 0;
+            for(int index = 0; index < steps; index++) {
+                int count = reader.getCount(index, speciesId);
+                min = Math.min(min, count);
+                max = Math.max(max, count);
+                sum += count;
+            }
+            if(steps > 0) {
+                System.out.printf("%s: min %d, mean %.1f, max %d%n", Species.getName(speciesId),
+                                  min, (double) sum / steps, max);
+            }
+        }
+    }
+
+    /**
+     * Return the mapping holding the block of a step.
+     */
+    private ByteBuffer blockOf(int index)
+    {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Step " + index + " of " + size);
+        }
+        return mappings[index / MetricsRecorder.BLOCK_STEPS / BLOCKS_PER_MAPPING];
+    }
+
+    /**
+     * Return the position of a step's value in its mapping.
+     */
+    private static int offsetOf(int index, int column, int valueSize)
+    {
+        int block = index / MetricsRecorder.BLOCK_STEPS % BLOCKS_PER_MAPPING;
+        int row = index % MetricsRecorder.BLOCK_STEPS;
+        return block * MetricsRecorder.BLOCK_SIZE + column + valueSize * row;
+    }
+}
@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the metrics of every step to a columnar binary file, which
+ * MetricsReader reads by mapping it into memory.
+ *
+ * The metrics of a step are the count of every species and of infected
+ * animals, the month (and so the season), whether it rained and how
+ * long the step took to compute.
+ *
+ * The steps are grouped in blocks of BLOCK_STEPS. Within a block each
+ * metric is a column, so that a scan over one metric reads consecutive
+ * values. Every block has the same size, whether full or not, so the
+ * position of any step can be computed.
+ *
+ * Format (version 1, big-endian):
+ *   header: int MAGIC, short VERSION, short number of species,
+ *           int BLOCK_STEPS
+ *   block:  int number of steps in the block, then BLOCK_STEPS values of:
+ *           int step, int count of each species (one column per species),
+ *           int infected count, byte month, byte raining, long step time
+ *           in nanoseconds
+ *
+ * Full blocks are handed to a background thread through a short queue,
+ * so the simulation waits rather than piling up blocks if the disk
+ * cannot keep up. When a run stops, the block in progress is written
+ * too, and written again in place once it has more steps.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class MetricsRecorder implements SimulationListener
+{
+    // "FRSM": foxes-and-rabbits simulation metrics.
+    static final int MAGIC = 0x4652534D;
+    public static final int VERSION = 1;
+    // The number of steps in a block.
+    public static final int BLOCK_STEPS = 8192;
+    static final int HEADER_SIZE = 4 + 2 + 2 + 4;
+
+    // The offsets of the columns in a block.
+    static final int STEP_COLUMN = 4;
+    static final int COUNT_COLUMNS = STEP_COLUMN + 4 * BLOCK_STEPS;
+    static final int INFECTED_COLUMN = COUNT_COLUMNS + 4 * BLOCK_STEPS * Species.COUNT;
+    static final int MONTH_COLUMN = INFECTED_COLUMN + 4 * BLOCK_STEPS;
+    static final int RAINING_COLUMN = MONTH_COLUMN + BLOCK_STEPS;
+    static final int NANOS_COLUMN = RAINING_COLUMN + BLOCK_STEPS;
+    static final int BLOCK_SIZE = NANOS_COLUMN + 8 * BLOCK_STEPS;
+
+    // The number of blocks that may wait for the writer.
+    private static final int QUEUE_CAPACITY = 4;
+
+    private final Simulator simulator;
+    private final FileChannel channel;
+    // Blocks waiting to be written, with the file position of each.
+    private final BlockingQueue<Block> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    // The block being filled.
+    private ByteBuffer block;
+    // The number of steps in the block being filled.
+    private int rows;
+    // The number of blocks started so far.
+    private long blocks;
+    // The first failure of the writer, reported on the simulation thread.
+    private volatile IOException failure;
+
+    /**
+     * A block handed to the writer, or the end of the recording if the
+     * buffer is null.
+     */
+    private static class Block
+    {
+        final ByteBuffer buffer;
+        final long position;
+
+        Block(ByteBuffer buffer, long position)
+        {
+            this.buffer = buffer;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Start recording the metrics of a simulation.
+     * @param file The metrics file; it is replaced if it exists.
+     * @param simulator The simulation to record.
+     * @throws IOException If the file cannot be created.
+     */
+    public MetricsRecorder(Path file, Simulator simulator) throws IOException
+    {
+        this.simulator = simulator;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) Species.COUNT).putInt(BLOCK_STEPS);
+        header.flip();
+        while(header.hasRemaining()) {
+            channel.write(header);
+        }
+        block = ByteBuffer.allocate(BLOCK_SIZE);
+        writer = new Thread(this::writeBlocks, "metrics-writer");
+        writer.setDaemon(true);
+        writer.start();
+        simulator.addListener(this);
+    }
+
+    /**
+     * Add the metrics of a step to the block, and hand the block to the
+     * writer once it is full.
+     */
+    @Override
+    public void stepCompleted(SimulationContext context, Field field, FieldStats stats)
+    {
+        if(failure != null) {
+            throw new UncheckedIOException("Writing the metrics failed", failure);
+        }
+        block.putInt(STEP_COLUMN + 4 * rows, context.getStep());
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            block.putInt(COUNT_COLUMNS + 4 * (BLOCK_STEPS * speciesId + rows), field.getCount(speciesId));
+        }
+        block.putInt(INFECTED_COLUMN + 4 * rows, field.getInfectedCount());
+        block.put(MONTH_COLUMN + rows, (byte) context.getClock().getCurrentMonth());
+        block.put(RAINING_COLUMN + rows, (byte) (context.getWeather().isRaining() ? 1 : 0));
+        block.putLong(NANOS_COLUMN + 8 * rows, simulator.getLastStepNanos());
+        rows++;
+        if(rows == BLOCK_STEPS) {
+            handOver(block);
+            block = ByteBuffer.allocate(BLOCK_SIZE);
+            rows = 0;
+            blocks++;
+        }
+    }
+
+    /**
+     * Write the block in progress, so the file is complete up to here.
+     */
+    @Override
+    public void simulationStopped(SimulationContext context, Field field, boolean viable)
+    {
+        if(rows > 0) {
+            // The block goes on filling, so the writer gets a copy.
+            handOver(ByteBuffer.allocate(BLOCK_SIZE).put(block.duplicate()).clear());
+        }
+    }
+
+    /**
+     * Stop recording: write the block in progress and close the file.
+     * @throws IOException If anything could not be written.
+     */
+    public void close() throws IOException
+    {
+        simulator.removeListener(this);
+        if(rows > 0) {
+            handOver(block);
+        }
+        try {
+            queue.put(new Block(null, 0));
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the metrics file", e);
+        }
+        finally {
+            channel.close();
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Queue the block being filled (or a copy of it) with its step count
+     * set, waiting while the queue is full. If the wait is interrupted the
+     * block is lost, so the recording fails (see failure) rather than
+     * leave a hole in the file.
+     */
+    private void handOver(ByteBuffer buffer)
+    {
+        buffer.putInt(0, rows);
+        try {
+            queue.put(new Block(buffer, HEADER_SIZE + blocks * BLOCK_SIZE));
+        }
+        catch(InterruptedException e) {
+            // keep the interrupt for the simulation loop to notice
+            Thread.currentThread().interrupt();
+            if(failure == null) {
+                failure = new InterruptedIOException("Interrupted while handing over a block of metrics");
+            }
+        }
+    }
+
+    /**
+     * Write blocks from the queue until the end of the recording.
+     */
+    private void writeBlocks()
+    {
+        try {
+            for(Block next = queue.take(); next.buffer != null; next = queue.take()) {
+                if(failure == null) {
+                    try {
+                        long position = next.position;
+                        while(next.buffer.hasRemaining()) {
+                            position += channel.write(next.buffer, position);
+                        }
+                    }
+                    catch(IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            // the recording is abandoned
+        }
+    }
+}
@@ -1,6 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Models a Mouse in the ecosystem simulation.
@@ -25,7 +23,6 @@ public class Mouse extends Animal
     private static final int MAX_AGE = 12;
     private static final double BREEDING_PROBABILITY = 0.18;
     private static final int MAX_LITTER_SIZE = 8;
-    private static final int BERRY_FOOD_VALUE = 15;
 
     /**
      * Create a mouse. A bear can be created as a new born (age zero
@@ -33,58 +30,15 @@ public class Mouse extends Animal
      * 
      * @param randomAge If true, the bear will have random age and hunger level.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Mouse(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
-        if (Randomizer.getRandom().nextDouble() < 0.1) { // 10% chance to be infected at birth
+    public Mouse(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
+        if (rand.nextDouble() < 0.1) { // 10% chance to be infected at birth
             setInfected();
         }
     }
     
-    /**
-     * Look for food around the mouse.
-     * Checks for nearby predators first and may skip eating if predators are present.
-     * Only eats berries and must manage predator avoidance.
-     * 
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if none found.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            
-            // First, check if there are any predators nearby
-            boolean dangerNearby = false;
-            for(Location loc : adjacent) {
-                Animal animal = field.getAnimalAt(loc);
-                if(animal instanceof Bear || animal instanceof Owl || animal instanceof Snake) {
-                    dangerNearby = true;
-                    break;
-                }
-            }
-            
-            // If danger is nearby, mice might skip eating to move to safety
-            if(dangerNearby && getFoodLevel() > BERRY_FOOD_VALUE/2) {
-                return null;
-            }
-            
-            // Look for food if hungry enough or no danger
-            while(it.hasNext()) {
-                Location where = it.next();
-                Plant plant = field.getPlantAt(where);
-                
-                if(plant instanceof Berry && plant.isAlive()) {
-                    plant.setDead();
-                    eat(BERRY_FOOD_VALUE);
-                    return where;
-                }
-            }
-        }
-        return null;
-    }
-    
      /**
      * Make the mouse eat food.
      * Only eats when below 50% food level to maintain realistic behavior.
@@ -104,12 +58,17 @@ public class Mouse extends Animal
      * @param field The field to place the bear in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Mouse young = new Mouse(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Mouse young = new Mouse(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Implementation of abstract methods
+    @Override
+    public int getSpeciesId() {
+        return Species.MOUSE;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -132,7 +91,7 @@ public class Mouse extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return BERRY_FOOD_VALUE;  // Maximum food value from eating a deer
+        return FoodWeb.getFoodValue(Species.MOUSE, Species.BERRY);  // Maximum food value from eating a berry
     }
     
     @Override
@@ -141,8 +100,8 @@ public class Mouse extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return !TimeKeeper.isDaytime(); // Nocturnal (Active at night)
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return !clock.isDaytime(); // Nocturnal (Active at night)
     }
     
     @Override
@@ -1,6 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Models an Owl in the ecosystem simulation.
@@ -25,10 +23,6 @@ public class Owl extends Animal
     private static final int MAX_AGE = 7;
     private static final double BREEDING_PROBABILITY = 0.20;
     private static final int MAX_LITTER_SIZE = 5;
-    private static final int MOUSE_FOOD_VALUE = 25;
-    private static final int LIZARD_FOOD_VALUE = 30;
-    
-    protected static final Random rand = Randomizer.getRandom();
 
     /**
      * Create a new owl. Owls can be created as newborn (age zero and not hungry)
@@ -37,49 +31,10 @@ public class Owl extends Animal
      * @param randomAge If true, the owl starts with random age and hunger.
      * @param field The field currently being used.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Owl(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
-    }
-    
-    /**
-     * Look for prey adjacent to the current location.
-     * Owls prefer lizards over mice but will eat either.
-     * Implements 50% hunting efficiency reduction and disease transmission.
-     * 
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if none found.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            
-            while(it.hasNext()) {
-                Location where = it.next();
-                Animal animal = field.getAnimalAt(where);
-                
-                // Only eat prey 50% of the time (reduce hunting efficiency)
-                if (rand.nextDouble() < 0.5) {
-                    if(animal instanceof Lizard && animal.isAlive()) {
-                        animal.setDead();
-                        eat(LIZARD_FOOD_VALUE);
-                        return where;
-                    }
-                }
-                else if(animal instanceof Mouse && animal.isAlive()) {
-                    // Check if the mouse is infected
-                    if (animal.isInfected() && Randomizer.getRandom().nextDouble() < PREDATOR_INFECTION_PROBABILITY) {
-                        setInfected();  // 80% chance to get infected
-                    }
-                    animal.setDead();
-                    eat(MOUSE_FOOD_VALUE);
-                    return where;
-                }
-            }
-        }      
-        return null;
+    public Owl(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
     }
     
     /**
@@ -102,12 +57,17 @@ public class Owl extends Animal
      * @param field The field to place the baby in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Owl young = new Owl(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Owl young = new Owl(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Implementation of abstract methods
+    @Override
+    public int getSpeciesId() {
+        return Species.OWL;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -130,7 +90,7 @@ public class Owl extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return MOUSE_FOOD_VALUE;  // Maximum food value from eating a deer
+        return FoodWeb.getFoodValue(Species.OWL, Species.MOUSE);  // Maximum food value from eating a mouse
     }
     
       @Override
@@ -140,8 +100,8 @@ public class Owl extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return !TimeKeeper.isDaytime(); // Nocturnal (Active at night)
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return !clock.isDaytime(); // Nocturnal (Active at night)
     }
     
     @Override
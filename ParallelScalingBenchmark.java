@@ -0,0 +1,97 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Measures how the step time of the ParallelStepEngine scales with the
+ * number of threads. For each thread count (1, 2, 4, ... up to the number
+ * of available processors) a field is populated the same way and stepped;
+ * the average time per step and the speed-up over one thread are printed.
+ * 
+ * Usage: java ParallelScalingBenchmark [size] [steps] [stripeRows]
+ * 
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class ParallelScalingBenchmark
+{
+    // Steps run before timing, so that the JIT has compiled the step.
+    private static final int WARMUP_STEPS = 10;
+    // The field size the cluster counts of Simulator.populate are made for.
+    private static final int REFERENCE_CELLS = 120 * 120;
+
+    /**
+     * Run the benchmark and print the results.
+     * @param args Optional field size, number of timed steps and stripe height.
+     */
+    public static void main(String[] args)
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int stripeRows = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Field " + size + "x" + size + ", " + steps + " steps, stripes of "
+                           + stripeRows + " rows, up to " + maxThreads + " threads");
+        double single = 0;
+        for(int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            double msPerStep = run(size, steps, threads, stripeRows);
+            if(threads == 1) {
+                single = msPerStep;
+            }
+            System.out.printf("%3d threads %10.1f ms/step %6.2fx%n", threads, msPerStep, single / msPerStep);
+        }
+    }
+
+    /**
+     * Step a freshly populated field.
+     * @return The average time per step in milliseconds.
+     */
+    private static double run(int size, int steps, int threads, int stripeRows)
+    {
+        long seed = Randomizer.DEFAULT_SEED;
+        Field field = new Field(size, size);
+        Field spareField = new Field(size, size, field.getPopulation(), field.getPlantLayer());
+        populate(field, Randomizer.forStep(seed, 0));
+        SimulationContext context = new SimulationContext(seed);
+        ParallelStepEngine engine = new ParallelStepEngine(threads, stripeRows);
+
+        long start = 0;
+        for(int step = 0; step < WARMUP_STEPS + steps; step++) {
+            if(step == WARMUP_STEPS) {
+                start = System.nanoTime();
+            }
+            context.advance();
+            engine.step(field, spareField, context);
+            Field nextField = spareField;
+            spareField = field;
+            spareField.clear();
+            field = nextField;
+        }
+        double msPerStep = (System.nanoTime() - start) / 1e6 / steps;
+        engine.shutdown();
+        return msPerStep;
+    }
+
+    /**
+     * Fill a field with clusters, scaling the numbers used by
+     * Simulator.populate to the size of the field.
+     */
+    private static void populate(Field field, RandomGenerator rand)
+    {
+        int scale = Math.max(1, field.getDepth() * field.getWidth() / REFERENCE_CELLS);
+        for(int speciesId : Species.getPlacementOrder()) {
+            field.placeRandomClusters(speciesId, Species.getClusterCount(speciesId) * scale, rand);
+        }
+    }
+
+    /**
+     * @return The next thread count to try: doubling, but always ending
+     *         with the maximum.
+     */
+    private static int nextThreadCount(int threads, int maxThreads)
+    {
+        if(threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+}
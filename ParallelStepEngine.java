@@ -0,0 +1,243 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+
+/**
+ * Updates the animals and plants of a field on several threads.
+ * 
+ * The field is split into horizontal stripes of a fixed number of rows.
+ * An animal or plant only ever looks at, moves into, or seeds the cells
+ * next to it, so what happens in a stripe can reach at most one row into
+ * the stripes above and below it. Each phase of a step therefore runs in
+ * two passes: first all even-numbered stripes in parallel, then all
+ * odd-numbered ones. As long as stripes are at least two rows high, the
+ * stripes running at the same time never touch the same cell.
+ * 
+ * Conflicts across a stripe border are resolved by that order:
+ * - Within a stripe, occupants act in row-major order of their cell.
+ * - A move or birth into a border cell claims it in the next field;
+ *   the stripe that runs in the earlier pass gets it, and the later
+ *   stripe sees the cell as occupied.
+ * - A predator may eat prey across the border. Prey eaten by an even
+ *   stripe dies before its own (odd) stripe runs and so never acts;
+ *   prey that has already acted is removed when the field is compacted.
+ * 
+ * Plants stay in a layer shared by both fields, and only the plants on
+ * its frontier act: those grown up with a cell next to them without a
+ * plant (see PlantLayer). The layer grows the other plants as they come
+ * due, after the plants have acted.
+ *
+ * The threat map of the current field, the plant frontier, the growth
+ * schedule and the aging pass over the population run before the phases,
+ * on the calling thread, as does the growth of plants after them.
+ * Compaction of the next field runs stripe by stripe in parallel, since
+ * it never looks beyond a cell; the chunks it leaves empty are then
+ * freed on the calling thread. Stripes go from one allocated chunk of
+ * a row to the next (see Field.nextAllocatedColumn), so an empty part of
+ * a large field costs next to nothing.
+ * 
+ * Each stripe draws from its own random stream, derived from the seed,
+ * the step, the phase and the stripe number. Since the stripes, their
+ * passes and the order within a stripe do not depend on the number of
+ * threads, a run gives the same result on one thread as on many. (The
+ * stripe height does change the result.) With one thread no pool is
+ * created and the stripes run on the calling thread.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class ParallelStepEngine
+{
+    // The smallest stripe that keeps stripes of one pass apart.
+    public static final int MIN_STRIPE_ROWS = 2;
+
+    // The parts of a step that are run stripe by stripe.
+    private static final int ANIMALS = 0;
+    private static final int PLANTS = 1;
+    private static final int COMPACT = 2;
+
+    // The worker threads, or null to run on the calling thread.
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final int stripeRows;
+
+    // The state of the step in progress.
+    private Field currentField;
+    private Field nextField;
+    private SimulationContext context;
+
+    /**
+     * Create an engine.
+     * @param threads The number of worker threads.
+     * @param stripeRows The height of a stripe, at least MIN_STRIPE_ROWS.
+     */
+    public ParallelStepEngine(int threads, int stripeRows)
+    {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
+        if(stripeRows < MIN_STRIPE_ROWS) {
+            throw new IllegalArgumentException("Stripes must be at least " + MIN_STRIPE_ROWS
+                                               + " rows high: " + stripeRows);
+        }
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.threads = threads;
+        this.stripeRows = stripeRows;
+    }
+
+    /**
+     * Update every animal and plant of the current field, building the
+     * next field, and compact the next field.
+     * @param currentField The field at the start of the step.
+     * @param nextField The (empty) field to build.
+     * @param context The simulation's seed, step number, clock and weather.
+     */
+    public void step(Field currentField, Field nextField, SimulationContext context)
+    {
+        this.currentField = currentField;
+        this.nextField = nextField;
+        this.context = context;
+        int stripes = (currentField.getDepth() + stripeRows - 1) / stripeRows;
+
+        PlantLayer plants = currentField.getPlantLayer();
+        currentField.updateThreats();
+        plants.updateFrontier();
+        plants.scheduleGrowth(context);
+        currentField.getPopulation().updateLifeCycle(context.getSeed(), context.getStep());
+        for(int phase : new int[] {ANIMALS, PLANTS}) {
+            runStripes(phase, 0, stripes, 2);
+            runStripes(phase, 1, stripes, 2);
+        }
+        plants.advanceGrowth(context);
+        runStripes(COMPACT, 0, stripes, 1);
+        nextField.releaseEmptyChunks();
+
+        this.currentField = null;
+        this.nextField = null;
+        this.context = null;
+    }
+
+    /**
+     * @return The number of worker threads.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @return The height of a stripe in rows.
+     */
+    public int getStripeRows()
+    {
+        return stripeRows;
+    }
+
+    /**
+     * Stop the worker threads. The engine cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Run a phase on every stride-th stripe from first up to (not
+     * including) end, on the worker threads or, if there are none,
+     * in order on this thread.
+     */
+    private void runStripes(int phase, int first, int end, int stride)
+    {
+        if(pool != null) {
+            pool.invoke(new StripeTask(phase, first, end, stride));
+        }
+        else {
+            for(int stripe = first; stripe < end; stripe += stride) {
+                runStripe(phase, stripe);
+            }
+        }
+    }
+
+    /**
+     * Run one part of the step on a single stripe.
+     */
+    private void runStripe(int phase, int stripe)
+    {
+        int firstRow = stripe * stripeRows;
+        int endRow = Math.min(firstRow + stripeRows, currentField.getDepth());
+        if(phase == COMPACT) {
+            nextField.compact(firstRow, endRow);
+            return;
+        }
+        RandomGenerator rand = Randomizer.forTile(context.getSeed(), context.getStep(), phase, stripe);
+        int width = currentField.getWidth();
+        PlantLayer plants = currentField.getPlantLayer();
+        for(int row = firstRow; row < endRow; row++) {
+            if(phase == ANIMALS) {
+                for(int chunkCol = currentField.nextAllocatedColumn(row, 0); chunkCol < width;
+                    chunkCol = currentField.nextAllocatedColumn(row, chunkCol + Field.CHUNK_SIZE)) {
+                    int endCol = Math.min(chunkCol + Field.CHUNK_SIZE, width);
+                    for(int col = chunkCol; col < endCol; col++) {
+                        Animal animal = currentField.getAnimalAt(Location.cellOf(row, col));
+                        if(animal != null && animal.isAlive()) {
+                            animal.act(currentField, nextField, context, rand);
+                            nextField.placeAnimal(animal, animal.getCell()); // ensure every animal moves
+                        }
+                    }
+                }
+            }
+            else {
+                for(int chunkCol = plants.nextAllocatedColumn(row, 0); chunkCol < width;
+                    chunkCol = plants.nextAllocatedColumn(row, chunkCol + Field.CHUNK_SIZE)) {
+                    // Only the plants on the frontier can do anything.
+                    long frontier = plants.getFrontier(row, chunkCol);
+                    while(frontier != 0) {
+                        int col = chunkCol + Long.numberOfTrailingZeros(frontier);
+                        frontier &= frontier - 1;
+                        Plant plant = plants.getPlantAt(row, col);
+                        if(!plant.isDead()) {
+                            plant.act(currentField, nextField, context, rand);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a phase on every stride-th stripe from first up to (not
+     * including) end, splitting the range until single stripes are left.
+     */
+    private class StripeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int phase, first, end, stride;
+
+        StripeTask(int phase, int first, int end, int stride)
+        {
+            this.phase = phase;
+            this.first = first;
+            this.end = end;
+            this.stride = stride;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int count = (end - first + stride - 1) / stride;
+            if(count <= 1) {
+                if(first < end) {
+                    runStripe(phase, first);
+                }
+            }
+            else {
+                int middle = first + (count / 2) * stride;
+                invokeAll(new StripeTask(phase, first, middle, stride),
+                          new StripeTask(phase, middle, end, stride));
+            }
+        }
+    }
+}
@@ -1,5 +1,4 @@
-import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Common elements of foxes and rabbits.
@@ -9,11 +8,10 @@ import java.util.Random;
  */
 public abstract class Plant
 {
-    private static final Random rand = Randomizer.getRandom();
-    
     private boolean alive;
-    private Location location;
+    private int cell;           // Position in the field, as a packed cell index
     private int growthStage;    // The growth stage (0 = seed, 1 = growing, 2 = mature)
+    private double growthDue;   // When it grows next on its GrowthWheel, or NaN if not scheduled
     
     /**
      * Create a new plant
@@ -22,39 +20,47 @@ public abstract class Plant
      */
     public Plant(Location location, boolean randomize) {
         this.alive = true;
-        this.location = location;
+        this.cell = location == null ? Field.NO_CELL : location.toCell();
         this.growthStage = randomize ? 2 : 0;  // Start mature if random, otherwise seed
+        this.growthDue = Double.NaN;
     }
     
     /**
-     * Make this plant act: grow and possibly spread seeds.
+     * Make this plant act: possibly spread seeds. The plant stays where it
+     * is, as the current and the next field share their plants. Plants
+     * that are not mature do not act; their PlantLayer grows them.
+     * @param currentField Current state of the field
+     * @param nextFieldState Next state being built
+     * @param context The simulation's clock and weather
+     * @param rand The random stream for this plant
      */
-    public void act(Field currentField, Field nextFieldState, Weather weather) {
-        if(isAlive()) {
-            // Only spread seeds if mature
-            if(growthStage == 2 && TimeKeeper.isDaytime()) {
-                spreadSeeds(nextFieldState);
-            }
-            // Try to grow if not mature
-            else if(growthStage < 2 && TimeKeeper.isDaytime()) {
-                // Apply seasonal growth modifier
-                double modifier = Season.getGrowthModifier(TimeKeeper.getCurrentSeason());
-    
-                // Increase growth chance if it's raining
-                if(weather.isRaining()) {
-                    modifier *= 2.0;  // 100% extra growth chance in rain
-                }
-    
-                if(rand.nextDouble() < getGrowthProbability() * modifier) {
-                    grow();
-                }
-            }
-    
-            // Stay in the same location if still alive
-            if(isAlive()) {
-                nextFieldState.placePlant(this, getLocation());
-            }
+    public void act(Field currentField, Field nextFieldState, SimulationContext context, RandomGenerator rand) {
+        TimeKeeper clock = context.getClock();
+        // Only spread seeds if mature
+        if(!isDead() && growthStage == 2 && clock.isDaytime()) {
+            spreadSeeds(nextFieldState, clock, rand);
+        }
+    }
+
+    /**
+     * Return the factor on the growth probability of every plant in a
+     * step: none at night, the season's modifier by day, doubled in rain.
+     * @param context The simulation's clock and weather
+     * @return The growth modifier of the current step.
+     */
+    public static double getGrowthModifier(SimulationContext context) {
+        TimeKeeper clock = context.getClock();
+        if(!clock.isDaytime()) {
+            return 0;
         }
+        // Apply seasonal growth modifier
+        double modifier = Season.getGrowthModifier(clock.getCurrentSeason());
+
+        // Increase growth chance if it's raining
+        if(context.getWeather().isRaining()) {
+            modifier *= 2.0;  // 100% extra growth chance in rain
+        }
+        return modifier;
     }
 
     
@@ -66,13 +72,64 @@ public abstract class Plant
         return alive && growthStage == 2;  // Only considered "alive" (for eating) when mature
     }
 
+    /**
+     * @return The growth stage (0 = seed, 1 = growing, 2 = mature).
+     */
+    public int getGrowthStage() {
+        return growthStage;
+    }
+
+    /**
+     * Set the growth stage to a saved value (see Checkpoint). This must
+     * be done before the plant is placed in a field.
+     * @param growthStage The saved growth stage.
+     */
+    public void restoreGrowthStage(int growthStage) {
+        this.growthStage = growthStage;
+    }
+
+    /**
+     * @return The clock of its species' GrowthWheel at which the plant
+     *         grows to its next stage, or NaN if it is not scheduled yet.
+     */
+    public double getGrowthDue() {
+        return growthDue;
+    }
+
+    /**
+     * Set the clock at which the plant grows to its next stage, when it
+     * is scheduled or restored (see Checkpoint). A saved value must be
+     * set before the plant is placed in a field.
+     * @param growthDue The clock of its species' GrowthWheel.
+     */
+    public void setGrowthDue(double growthDue) {
+        this.growthDue = growthDue;
+    }
+
+    /**
+     * Check whether the plant has grown up, whether or not it is still alive.
+     * @return true if the plant is mature.
+     */
+    public boolean isMature() {
+        return growthStage == 2;
+    }
+
+    /**
+     * Check whether the plant has been removed, e.g. eaten.
+     * Unlike isAlive, this is false for seeds and growing plants.
+     * @return true if the plant is dead.
+     */
+    public boolean isDead() {
+        return !alive;
+    }
+
     /**
      * Indicate that the animal is no longer alive.
      */
     protected void setDead()
     {
         alive = false;
-        location = null;
+        cell = Field.NO_CELL;
     }
     
     /**
@@ -81,11 +138,20 @@ public abstract class Plant
      */
     public Location getLocation()
     {
-        return location;
+        return cell == Field.NO_CELL ? null : Location.ofCell(cell);
     }
     
     /**
-     * Try to grow to next stage
+     * Return the plant's cell.
+     * @return The plant's packed cell index, or Field.NO_CELL if it is dead.
+     */
+    public int getCell()
+    {
+        return cell;
+    }
+    
+    /**
+     * Grow to next stage
      */
     protected void grow() {
             growthStage++;
@@ -94,20 +160,24 @@ public abstract class Plant
     /**
      * Try to spread seeds to adjacent locations
      */
-    protected void spreadSeeds(Field field) {
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
-        
+    protected void spreadSeeds(Field field, TimeKeeper clock, RandomGenerator rand) {
         // Modify spreading based on season
-        double modifier = Season.getGrowthModifier(TimeKeeper.getCurrentSeason());
+        double modifier = Season.getGrowthModifier(clock.getCurrentSeason());
         
-        if(!free.isEmpty() && rand.nextDouble() < getSpreadingProbability() * modifier) {
-            Location loc = free.get(0);
-            createNewPlant(false, loc, field);
+        // Only look for room once we know a seed will be spread
+        if(rand.nextDouble() < getSpreadingProbability() * modifier) {
+            int seedCell = field.randomSeedCell(cell, rand);
+            if(seedCell != Field.NO_CELL) {
+                createNewPlant(false, Location.ofCell(seedCell), field);
+            }
         }
     }
     
     // Abstract methods for specific plant types
-    protected abstract double getGrowthProbability();
+    /**
+     * @return The plant's species (see Species).
+     */
+    public abstract int getSpeciesId();
     protected abstract double getSpreadingProbability();
     protected abstract void createNewPlant(boolean randomize, Location location, Field field);
     
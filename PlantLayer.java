@@ -0,0 +1,541 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The plants of a field. Plants never move, so unlike the animals they
+ * are not copied from one field into the next every step: the two fields
+ * of a double-buffered pair share one layer, as they share the population.
+ *
+ * Inside a patch most plants can do nothing in a step: they are grown up
+ * and every cell around them already holds a plant. The layer keeps the
+ * frontier, the grown-up plants that have a cell next to them without a
+ * plant, and only those act (see ParallelStepEngine). The
+ * frontier is a bitset, one word per row of a chunk. Adding, growing up
+ * and removing a plant mark its chunk as changed, and at the start of a
+ * step the frontier is worked out again for the changed chunks and the
+ * chunks around them, a row of 64 cells at a time.
+ *
+ * Plants that are not grown up do not act either. They stay in the layer
+ * until they are eaten, like the grown-up ones. The layer schedules
+ * their growth on a GrowthWheel per species and grows the plants that
+ * are due at the end of each step.
+ *
+ * The plants are stored in the same chunks as the animals of a field (see
+ * Field.CHUNK_SIZE), allocated when a plant is first placed in them and
+ * freed once compaction finds them empty. Cells outside the field count
+ * as holding a plant, so a plant on the edge is not on the frontier just
+ * for being on the edge.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class PlantLayer
+{
+    private final int depth, width;
+    // The number of chunks across a row and down a column of the field.
+    private final int chunksAcross, chunksDown;
+    // The chunks, indexed like those of the field; null where there are no plants.
+    private final Chunk[] chunks;
+    // The chunks that are allocated, one bit per chunk, indexed like chunks.
+    private final long[] allocated;
+    // The number of mature plants of each species, indexed by species id.
+    // Plants are placed from several threads at once in a parallel step.
+    private final LongAdder[] counts = new LongAdder[Species.COUNT];
+    // The plants waiting to grow, indexed by species id; null for a
+    // species that has not had any.
+    private final GrowthWheel[] wheels = new GrowthWheel[Species.COUNT];
+
+    /**
+     * Create an empty layer for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public PlantLayer(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksAcross = Field.chunksAlong(width);
+        chunksDown = Field.chunksAlong(depth);
+        chunks = new Chunk[chunksDown * chunksAcross];
+        allocated = new long[(chunks.length + 63) >> 6];
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            counts[speciesId] = new LongAdder();
+        }
+    }
+
+    /**
+     * Place a plant in a cell, replacing any plant already there.
+     * @param plant The plant.
+     * @param cell The packed index of the cell.
+     */
+    public void place(Plant plant, int cell)
+    {
+        int row = Location.rowOf(cell);
+        int col = Location.colOf(cell);
+        Chunk chunk = allocateChunk(chunkIndexOf(row, col));
+        int slot = Field.slotOf(row, col);
+        Plant previous = chunk.plants[slot];
+        if(previous != plant) {
+            uncount(previous);
+            chunk.plants[slot] = plant;
+            long bit = 1L << col;
+            chunk.planted[row & Field.CHUNK_MASK] |= bit;
+            if(plant.isMature()) {
+                counts[plant.getSpeciesId()].increment();
+                chunk.growing[row & Field.CHUNK_MASK] &= ~bit;
+                chunk.unscheduled[row & Field.CHUNK_MASK] &= ~bit;
+            }
+            else {
+                chunk.growing[row & Field.CHUNK_MASK] |= bit;
+                chunk.unscheduled[row & Field.CHUNK_MASK] |= bit;
+                chunk.sown = true;
+            }
+            chunk.changed = true;
+        }
+    }
+
+    /**
+     * Put the plants placed since the last call that are not grown up on
+     * the wheels of their species, each with a budget drawn from its own
+     * stream unless it was restored with one. Call this on one thread at
+     * the start of a step, so a plant placed in the previous step (or
+     * restored) can grow in this one.
+     * @param context The simulation's seed and step number.
+     */
+    public void scheduleGrowth(SimulationContext context)
+    {
+        for(Chunk chunk : chunks) {
+            if(chunk != null && chunk.sown) {
+                chunk.sown = false;
+                for(int word = 0; word < Field.CHUNK_SIZE; word++) {
+                    long bits = chunk.unscheduled[word];
+                    chunk.unscheduled[word] = 0;
+                    while(bits != 0) {
+                        int slot = word << Field.CHUNK_BITS | Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        schedule(chunk.plants[slot], context);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Grow the plants that are due in this step to their next stage, and
+     * schedule the ones that are not grown up yet again. Call this on one
+     * thread once the plants have acted, so a plant that grows up only
+     * spreads seeds from the next step on.
+     * @param context The simulation's clock and weather.
+     */
+    public void advanceGrowth(SimulationContext context)
+    {
+        double modifier = Plant.getGrowthModifier(context);
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            if(wheels[speciesId] == null) {
+                continue;
+            }
+            int matured = 0;
+            for(int cell : wheels[speciesId].advance(modifier)) {
+                int row = Location.rowOf(cell);
+                int col = Location.colOf(cell);
+                Chunk chunk = chunks[chunkIndexOf(row, col)];
+                Plant plant = chunk == null ? null : chunk.plants[Field.slotOf(row, col)];
+                // Skip a plant that has been replaced since it was scheduled.
+                if(plant != null && !plant.isMature()) {
+                    plant.grow();
+                    plant.setGrowthDue(Double.NaN);
+                    if(plant.isMature()) {
+                        chunk.growing[row & Field.CHUNK_MASK] &= ~(1L << col);
+                        chunk.changed = true;
+                        matured++;
+                    }
+                    else {
+                        schedule(plant, context);
+                    }
+                }
+            }
+            counts[speciesId].add(matured);
+        }
+    }
+
+    /**
+     * Return the clock of the GrowthWheel of a species (see Checkpoint).
+     * @param speciesId A plant species.
+     * @return The clock, 0 if none of the species has waited to grow.
+     */
+    public double getGrowthClock(int speciesId)
+    {
+        return wheels[speciesId] == null ? 0 : wheels[speciesId].getClock();
+    }
+
+    /**
+     * Set the clock of the GrowthWheel of a species to a saved value. This
+     * must be done before growth is scheduled.
+     * @param speciesId A plant species.
+     * @param clock The saved clock.
+     */
+    public void restoreGrowthClock(int speciesId, double clock)
+    {
+        if(clock != 0) {
+            wheelOf(speciesId).restoreClock(clock);
+        }
+    }
+
+    /**
+     * Return the plant in the cell in a row and column, if any.
+     */
+    public Plant getPlantAt(int row, int col)
+    {
+        Chunk chunk = chunks[chunkIndexOf(row, col)];
+        return chunk == null ? null : chunk.plants[Field.slotOf(row, col)];
+    }
+
+    /**
+     * Tell whether the cell in a row and column holds no plant. A plant
+     * that has been eaten takes up its cell until the layer is compacted.
+     */
+    public boolean isEmpty(int row, int col)
+    {
+        return getPlantAt(row, col) == null;
+    }
+
+    /**
+     * Return the plants in a row of a chunk. Bit i is set if column
+     * chunkCol + i holds a plant.
+     * @param row The row.
+     * @param chunkCol The first column of a chunk (a multiple of Field.CHUNK_SIZE).
+     * @return The occupancy bits of the row of the chunk.
+     */
+    public long getPlanted(int row, int chunkCol)
+    {
+        Chunk chunk = chunks[chunkIndexOf(row, chunkCol)];
+        return chunk == null ? 0 : chunk.planted[row & Field.CHUNK_MASK];
+    }
+
+    /**
+     * Return the frontier in a row of a chunk. Bit i is set if the plant
+     * in column chunkCol + i is on the frontier, as worked out by the
+     * last call to updateFrontier.
+     * @param row The row.
+     * @param chunkCol The first column of a chunk (a multiple of Field.CHUNK_SIZE).
+     * @return The frontier bits of the row of the chunk.
+     */
+    public long getFrontier(int row, int chunkCol)
+    {
+        Chunk chunk = chunks[chunkIndexOf(row, chunkCol)];
+        return chunk == null ? 0 : chunk.frontier[row & Field.CHUNK_MASK];
+    }
+
+    /**
+     * Find the next chunk along a row that holds plants (see
+     * Field.nextAllocatedColumn).
+     * @param row The row.
+     * @param col The column to start from.
+     * @return The first column of the first allocated chunk that holds
+     *         cells of the row at or after col, or the width of the field
+     *         if there is none.
+     */
+    public int nextAllocatedColumn(int row, int col)
+    {
+        return Field.nextAllocatedColumn(allocated, chunksAcross, width, row, col);
+    }
+
+    /**
+     * Work out the frontier again where plants have been added, have
+     * grown up or have been removed since the last call.
+     */
+    public void updateFrontier()
+    {
+        int[] changed = new int[16];
+        int found = 0;
+        for(int index = 0; index < chunks.length; index++) {
+            Chunk chunk = chunks[index];
+            if(chunk != null && chunk.changed) {
+                chunk.changed = false;
+                if(found == changed.length) {
+                    changed = Arrays.copyOf(changed, found * 2);
+                }
+                changed[found++] = index;
+            }
+        }
+        for(int i = 0; i < found; i++) {
+            int chunkRow = changed[i] / chunksAcross;
+            int chunkCol = changed[i] % chunksAcross;
+            // A change on the border of a chunk changes its neighbours' frontier too.
+            for(int r = Math.max(chunkRow - 1, 0); r <= Math.min(chunkRow + 1, chunksDown - 1); r++) {
+                for(int c = Math.max(chunkCol - 1, 0); c <= Math.min(chunkCol + 1, chunksAcross - 1); c++) {
+                    Chunk chunk = chunks[r * chunksAcross + c];
+                    if(chunk != null) {
+                        updateFrontier(chunk, r, c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove dead plants from a band of rows, and count what is left in
+     * each chunk for releaseEmptyChunks. Bands that do not overlap can be
+     * compacted concurrently.
+     * @param firstRow The first row of the band.
+     * @param endRow The row after the last row of the band.
+     */
+    public void compact(int firstRow, int endRow)
+    {
+        int row = firstRow;
+        while(row < endRow) {
+            // The rows of the band within one row of chunks.
+            int chunkEndRow = Math.min((row | Field.CHUNK_MASK) + 1, endRow);
+            for(int chunkCol = nextAllocatedColumn(row, 0); chunkCol < width;
+                chunkCol = nextAllocatedColumn(row, chunkCol + Field.CHUNK_SIZE)) {
+                Chunk chunk = chunks[chunkIndexOf(row, chunkCol)];
+                int occupied = 0;
+                for(int r = row; r < chunkEndRow; r++) {
+                    int word = r & Field.CHUNK_MASK;
+                    long bits = chunk.planted[word];
+                    while(bits != 0) {
+                        int col = Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        int slot = word << Field.CHUNK_BITS | col;
+                        Plant plant = chunk.plants[slot];
+                        if(plant.isDead()) {
+                            uncount(plant);
+                            chunk.plants[slot] = null;
+                            chunk.planted[word] &= ~(1L << col);
+                            chunk.growing[word] &= ~(1L << col);
+                            chunk.changed = true;
+                        }
+                        else {
+                            occupied++;
+                        }
+                    }
+                }
+                chunk.occupied.addAndGet(occupied);
+            }
+            row = chunkEndRow;
+        }
+    }
+
+    /**
+     * Free the chunks that were found empty when every band of the layer
+     * was compacted since the last call. Call this on one thread, after
+     * the bands are done.
+     */
+    public void releaseEmptyChunks()
+    {
+        for(int index = 0; index < chunks.length; index++) {
+            Chunk chunk = chunks[index];
+            if(chunk != null && chunk.occupied.getAndSet(0) == 0) {
+                chunks[index] = null;
+                allocated[index >> 6] &= ~(1L << index);
+                markNeighboursChanged(index / chunksAcross, index % chunksAcross);
+            }
+        }
+    }
+
+    /**
+     * Remove every plant.
+     */
+    public void clear()
+    {
+        Arrays.fill(chunks, null);
+        Arrays.fill(allocated, 0);
+        Arrays.fill(wheels, null);
+
+        for(LongAdder count : counts) {
+            count.reset();
+        }
+    }
+
+    /**
+     * Return the number of mature plants of a species. Eaten plants are
+     * counted until the layer is compacted.
+     * @param speciesId The species (see Species).
+     * @return The number of mature plants of the species.
+     */
+    public int getCount(int speciesId)
+    {
+        return counts[speciesId].intValue();
+    }
+
+    /**
+     * @return All plants, in row-major order of their cells.
+     */
+    public List<Plant> getPlants()
+    {
+        List<Plant> present = new ArrayList<>();
+        for(int row = 0; row < depth; row++) {
+            for(int chunkCol = 0; chunkCol < chunksAcross; chunkCol++) {
+                Chunk chunk = chunks[chunkIndexOf(row, chunkCol << Field.CHUNK_BITS)];
+                if(chunk != null) {
+                    int word = row & Field.CHUNK_MASK;
+                    long bits = chunk.planted[word];
+                    while(bits != 0) {
+                        present.add(chunk.plants[word << Field.CHUNK_BITS | Long.numberOfTrailingZeros(bits)]);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Work out the frontier of a chunk: the grown-up plants that have a
+     * neighbour without a plant.
+     */
+    private void updateFrontier(Chunk chunk, int chunkRow, int chunkCol)
+    {
+        for(int word = 0; word < Field.CHUNK_SIZE; word++) {
+            int row = (chunkRow << Field.CHUNK_BITS) + word;
+            long planted = chunk.planted[word];
+            if(planted == 0) {
+                chunk.frontier[word] = 0;
+                continue;
+            }
+            long surrounded = sidesPlanted(row - 1, chunkCol, true)
+                              & sidesPlanted(row, chunkCol, false)
+                              & sidesPlanted(row + 1, chunkCol, true);
+            chunk.frontier[word] = planted & ~chunk.growing[word] & ~surrounded;
+        }
+    }
+
+    /**
+     * Return the cells of a row of a chunk whose neighbours to the left and
+     * right in that row hold plants and, if wanted, that hold a plant
+     * themselves. Rows outside the field count as full.
+     */
+    private long sidesPlanted(int row, int chunkCol, boolean withCentre)
+    {
+        if(row < 0 || row >= depth) {
+            return ~0L;
+        }
+        long here = plantedWord(row, chunkCol);
+        long left = here << 1 | plantedWord(row, chunkCol - 1) >>> Field.CHUNK_MASK;
+        long right = here >>> 1 | plantedWord(row, chunkCol + 1) << Field.CHUNK_MASK;
+        long sides = left & right;
+        return withCentre ? sides & here : sides;
+    }
+
+    /**
+     * Return the cells of a row of a chunk that hold a plant or lie
+     * outside the field.
+     */
+    private long plantedWord(int row, int chunkCol)
+    {
+        if(chunkCol < 0 || chunkCol >= chunksAcross) {
+            return ~0L;
+        }
+        Chunk chunk = chunks[(row >> Field.CHUNK_BITS) * chunksAcross + chunkCol];
+        long planted = chunk == null ? 0 : chunk.planted[row & Field.CHUNK_MASK];
+        int inside = width - (chunkCol << Field.CHUNK_BITS);
+        return inside >= Field.CHUNK_SIZE ? planted : planted | ~0L << inside;
+    }
+
+    /**
+     * Make the frontier of the chunks around a chunk be worked out again.
+     */
+    private void markNeighboursChanged(int chunkRow, int chunkCol)
+    {
+        for(int r = Math.max(chunkRow - 1, 0); r <= Math.min(chunkRow + 1, chunksDown - 1); r++) {
+            for(int c = Math.max(chunkCol - 1, 0); c <= Math.min(chunkCol + 1, chunksAcross - 1); c++) {
+                Chunk chunk = chunks[r * chunksAcross + c];
+                if(chunk != null) {
+                    chunk.changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Put a plant on the wheel of its species, to wait for its next stage.
+     */
+    private void schedule(Plant plant, SimulationContext context)
+    {
+        GrowthWheel wheel = wheelOf(plant.getSpeciesId());
+        double due = plant.getGrowthDue();
+        if(Double.isNaN(due)) {
+            double chance = Randomizer.forGrowth(context.getSeed(), context.getStep(), plant.getCell(),
+                                                 plant.getGrowthStage()).nextDouble();
+            due = wheel.getClock() - Math.log(1 - chance);
+            plant.setGrowthDue(due);
+        }
+        wheel.schedule(plant.getCell(), due);
+    }
+
+    /**
+     * Return the wheel of a plant species, creating it if needed.
+     */
+    private GrowthWheel wheelOf(int speciesId)
+    {
+        if(wheels[speciesId] == null) {
+            wheels[speciesId] = new GrowthWheel(Species.getGrowthProbability(speciesId));
+        }
+        return wheels[speciesId];
+    }
+
+    /**
+     * Stop counting a plant that leaves the layer.
+     */
+    private void uncount(Plant plant)
+    {
+        if(plant != null && plant.isMature()) {
+            counts[plant.getSpeciesId()].decrement();
+        }
+    }
+
+    /**
+     * Return the chunk with an index, allocating it if needed. See
+     * Field for why this is synchronized.
+     */
+    private Chunk allocateChunk(int index)
+    {
+        Chunk chunk = chunks[index];
+        if(chunk == null) {
+            synchronized(chunks) {
+                chunk = chunks[index];
+                if(chunk == null) {
+                    chunk = new Chunk();
+                    chunks[index] = chunk;
+                    allocated[index >> 6] |= 1L << index;
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Return the index of the chunk holding a cell.
+     */
+    private int chunkIndexOf(int row, int col)
+    {
+        return Field.chunkIndexOf(chunksAcross, row, col);
+    }
+
+    /**
+     * The plants of a chunk, indexed by slotOf, and its bitsets, indexed
+     * by row within the chunk with one bit per column.
+     */
+    private static final class Chunk
+    {
+        private final Plant[] plants = new Plant[Field.CHUNK_SIZE * Field.CHUNK_SIZE];
+        // The cells holding a plant.
+        private final long[] planted = new long[Field.CHUNK_SIZE];
+        // The cells holding a plant that is not mature yet.
+        private final long[] growing = new long[Field.CHUNK_SIZE];
+        // The plants that act in a step: grown up, with room next to them.
+        private final long[] frontier = new long[Field.CHUNK_SIZE];
+        // The cells of growing plants that are not on a GrowthWheel yet.
+        private final long[] unscheduled = new long[Field.CHUNK_SIZE];
+        // The plants counted by compaction since the last release.
+        private final AtomicInteger occupied = new AtomicInteger();
+        // Whether plants were added, grew up or were removed since the
+        // frontier was last worked out. New chunks start out changed.
+        private boolean changed = true;
+        // Whether any cell is unscheduled.
+        private boolean sown;
+    }
+}
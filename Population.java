@@ -0,0 +1,372 @@
+import java.util.Arrays;
+
+/**
+ * A columnar store for the state of every animal in a simulation.
+ * Instead of each Animal object holding its own fields, the age, food
+ * level, cell, species and flags of all animals are kept in primitive
+ * arrays, one "column" per attribute, and each animal owns a slot (row)
+ * in those columns. The Animal objects are thin views onto their slot.
+ * 
+ * This keeps the per-animal state small and contiguous, so the parts of a
+ * step that touch every animal - aging, hunger and disease - run as tight
+ * loops over the arrays (see updateLifeCycle).
+ * 
+ * Columns are split into fixed-size pages. Growing the store only adds
+ * pages, so an existing slot never moves. Slots of dead animals are
+ * recycled for newborns.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class Population
+{
+    // The slot of an animal that is no longer in the population.
+    public static final int NO_SLOT = -1;
+
+    // Chance of death after a new infection.
+    private static final double INFECTION_DEATH_PROBABILITY = 0.4;
+
+    // Bits of the flags column.
+    private static final byte ALIVE = 1;
+    private static final byte MALE = 2;
+    private static final byte INFECTED = 4;
+    private static final byte JUST_INFECTED = 8;  // infected since the last life cycle update
+
+    // Each page holds 2^PAGE_BITS slots.
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // The columns, indexed by [page][slot within page].
+    private int[][] ages = new int[0][];
+    private int[][] foodLevels = new int[0][];
+    private int[][] cells = new int[0][];
+    private byte[][] speciesIds = new byte[0][];
+    private byte[][] flags = new byte[0][];
+    private Animal[][] views = new Animal[0][];
+
+    // The maximum age of each species, indexed by species id.
+    private final int[] maxAges = new int[Species.COUNT];
+
+    // Slots below this have been used at some point.
+    private int highWater;
+    // A stack of released slots below highWater, reused first.
+    private int[] freeSlots = new int[PAGE_SIZE];
+    private int freeCount;
+    // The number of live animals.
+    private int size;
+    // The number of live and of infected animals of each species, indexed by species id.
+    private final int[] counts = new int[Species.COUNT];
+    private final int[] infectedCounts = new int[Species.COUNT];
+    private int infectedCount;
+
+    /**
+     * Add an animal to the population.
+     * @param view The animal object that will read and write the slot.
+     * @param speciesId The animal's species (see Species).
+     * @param maxAge The maximum age of the species.
+     * @param cell The animal's packed cell index.
+     * @param male Whether the animal is male.
+     * @param age The animal's starting age.
+     * @param foodLevel The animal's starting food level.
+     * @return The animal's slot.
+     */
+    public synchronized int add(Animal view, int speciesId, int maxAge, int cell,
+                                boolean male, int age, int foodLevel)
+    {
+        int slot;
+        if(freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        }
+        else {
+            slot = highWater++;
+            if((slot >>> PAGE_BITS) == flags.length) {
+                addPage();
+            }
+        }
+        int page = slot >>> PAGE_BITS;
+        int i = slot & PAGE_MASK;
+        ages[page][i] = age;
+        foodLevels[page][i] = foodLevel;
+        cells[page][i] = cell;
+        speciesIds[page][i] = (byte) speciesId;
+        flags[page][i] = male ? (byte) (ALIVE | MALE) : ALIVE;
+        views[page][i] = view;
+        maxAges[speciesId] = maxAge;
+        counts[speciesId]++;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Remove a dead animal, making its slot available again.
+     * @param slot The animal's slot.
+     */
+    public synchronized void remove(int slot)
+    {
+        int page = slot >>> PAGE_BITS;
+        int i = slot & PAGE_MASK;
+        int speciesId = speciesIds[page][i];
+        counts[speciesId]--;
+        if((flags[page][i] & INFECTED) != 0) {
+            infectedCounts[speciesId]--;
+            infectedCount--;
+        }
+        flags[page][i] = 0;
+        cells[page][i] = Field.NO_CELL;
+        views[page][i] = null;
+        if(freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+    }
+
+    /**
+     * Remove every animal, e.g. before the field is populated again.
+     */
+    public void clear()
+    {
+        for(int slot = 0; slot < highWater; slot++) {
+            Animal view = views[slot >>> PAGE_BITS][slot & PAGE_MASK];
+            if(view != null) {
+                view.setDead();
+            }
+        }
+        highWater = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * Make every animal older and hungrier, and let new infections run their
+     * course. Animals that reach their maximum age, starve, or die of an
+     * infection are removed. This is done once per step, before the animals
+     * act, as one pass over the columns.
+     * 
+     * The order of the slots depends on when animals were born, which with
+     * several threads is not repeatable, so the infection death chance is
+     * drawn from a stream of the animal's own, keyed by its cell.
+     * @param seed The seed of the simulation.
+     * @param step The step number.
+     */
+    public void updateLifeCycle(long seed, int step)
+    {
+        int pages = (highWater + PAGE_MASK) >>> PAGE_BITS;
+        for(int page = 0; page < pages; page++) {
+            int[] age = ages[page];
+            int[] foodLevel = foodLevels[page];
+            byte[] species = speciesIds[page];
+            byte[] flag = flags[page];
+            int end = Math.min(PAGE_SIZE, highWater - (page << PAGE_BITS));
+            for(int i = 0; i < end; i++) {
+                int f = flag[i];
+                if((f & ALIVE) == 0) {
+                    continue;
+                }
+                boolean dies = ++age[i] > maxAges[species[i]];
+                dies |= --foodLevel[i] <= 0;
+                if(!dies && (f & JUST_INFECTED) != 0) {
+                    // The death chance applies only once per infection
+                    flag[i] = (byte) (f & ~JUST_INFECTED);
+                    int cell = cells[page][i];
+                    dies = Randomizer.forEntity(seed, step, cell).nextDouble() < INFECTION_DEATH_PROBABILITY;
+                }
+                if(dies) {
+                    views[page][i].setDead();
+                }
+            }
+        }
+    }
+
+    /**
+     * Something told about the cell and species of every live animal.
+     */
+    public interface CellVisitor
+    {
+        void visit(int cell, int speciesId);
+    }
+
+    /**
+     * Tell a visitor the cell and species of every live animal, as one
+     * pass over the columns.
+     * @param visitor The visitor.
+     */
+    public void visitCells(CellVisitor visitor)
+    {
+        int pages = (highWater + PAGE_MASK) >>> PAGE_BITS;
+        for(int page = 0; page < pages; page++) {
+            int[] cell = cells[page];
+            byte[] species = speciesIds[page];
+            byte[] flag = flags[page];
+            int end = Math.min(PAGE_SIZE, highWater - (page << PAGE_BITS));
+            for(int i = 0; i < end; i++) {
+                if((flag[i] & ALIVE) != 0) {
+                    visitor.visit(cell[i], species[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of live animals.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of live animals of a species.
+     */
+    public synchronized int getCount(int speciesId)
+    {
+        return counts[speciesId];
+    }
+
+    /**
+     * @return The number of infected animals of a species.
+     */
+    public synchronized int getInfectedCount(int speciesId)
+    {
+        return infectedCounts[speciesId];
+    }
+
+    /**
+     * @return The number of infected animals.
+     */
+    public synchronized int getInfectedCount()
+    {
+        return infectedCount;
+    }
+
+    /**
+     * @return The age of the animal in a slot.
+     */
+    public int getAge(int slot)
+    {
+        return ages[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    /**
+     * @return The food level of the animal in a slot.
+     */
+    public int getFoodLevel(int slot)
+    {
+        return foodLevels[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    /**
+     * Set the food level of the animal in a slot.
+     */
+    public void setFoodLevel(int slot, int foodLevel)
+    {
+        foodLevels[slot >>> PAGE_BITS][slot & PAGE_MASK] = foodLevel;
+    }
+
+    /**
+     * @return The packed cell index of the animal in a slot.
+     */
+    public int getCell(int slot)
+    {
+        return cells[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    /**
+     * Set the packed cell index of the animal in a slot.
+     */
+    public void setCell(int slot, int cell)
+    {
+        cells[slot >>> PAGE_BITS][slot & PAGE_MASK] = cell;
+    }
+
+    /**
+     * @return The species id of the animal in a slot.
+     */
+    public int getSpeciesId(int slot)
+    {
+        return speciesIds[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    /**
+     * @return true if the animal in a slot is male.
+     */
+    public boolean isMale(int slot)
+    {
+        return (flags[slot >>> PAGE_BITS][slot & PAGE_MASK] & MALE) != 0;
+    }
+
+    /**
+     * @return true if the animal in a slot is infected.
+     */
+    public boolean isInfected(int slot)
+    {
+        return (flags[slot >>> PAGE_BITS][slot & PAGE_MASK] & INFECTED) != 0;
+    }
+
+    /**
+     * @return The flags of the animal in a slot (alive, male, infected and
+     *         just infected), e.g. for saving it.
+     */
+    public int getFlags(int slot)
+    {
+        return flags[slot >>> PAGE_BITS][slot & PAGE_MASK];
+    }
+
+    /**
+     * Overwrite the state of an animal with saved values.
+     * @param slot The animal's slot.
+     * @param age The saved age.
+     * @param foodLevel The saved food level.
+     * @param savedFlags The saved flags (see getFlags); the animal must be alive.
+     */
+    public synchronized void restore(int slot, int age, int foodLevel, int savedFlags)
+    {
+        int page = slot >>> PAGE_BITS;
+        int i = slot & PAGE_MASK;
+        boolean wasInfected = (flags[page][i] & INFECTED) != 0;
+        boolean infected = (savedFlags & INFECTED) != 0;
+        if(wasInfected != infected) {
+            int change = infected ? 1 : -1;
+            infectedCounts[speciesIds[page][i]] += change;
+            infectedCount += change;
+        }
+        ages[page][i] = age;
+        foodLevels[page][i] = foodLevel;
+        flags[page][i] = (byte) (savedFlags | ALIVE);
+    }
+
+    /**
+     * Infect an animal. Its death chance is applied at the next life cycle update.
+     */
+    public synchronized void setInfected(int slot)
+    {
+        int page = slot >>> PAGE_BITS;
+        int i = slot & PAGE_MASK;
+        if((flags[page][i] & INFECTED) == 0) {
+            infectedCounts[speciesIds[page][i]]++;
+            infectedCount++;
+        }
+        flags[page][i] |= INFECTED | JUST_INFECTED;
+    }
+
+    /**
+     * Add one page to every column.
+     */
+    private void addPage()
+    {
+        int pages = flags.length + 1;
+        ages = Arrays.copyOf(ages, pages);
+        foodLevels = Arrays.copyOf(foodLevels, pages);
+        cells = Arrays.copyOf(cells, pages);
+        speciesIds = Arrays.copyOf(speciesIds, pages);
+        flags = Arrays.copyOf(flags, pages);
+        views = Arrays.copyOf(views, pages);
+        int page = pages - 1;
+        ages[page] = new int[PAGE_SIZE];
+        foodLevels[page] = new int[PAGE_SIZE];
+        cells[page] = new int[PAGE_SIZE];
+        speciesIds[page] = new byte[PAGE_SIZE];
+        flags[page] = new byte[PAGE_SIZE];
+        views[page] = new Animal[PAGE_SIZE];
+    }
+}
@@ -1,9 +1,16 @@
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
- * 'useShared' to false to get different random behaviour every time.
+ * Provide control over the randomization of the simulation.
+ * 
+ * Rather than sharing one random generator, the simulation derives an
+ * independent SplittableRandom stream for each unit of work from a single
+ * seed: one per step (e.g. for the weather), one per stripe of the field
+ * in each phase of a step, and one per entity where a draw does not belong
+ * to any stripe. A stream only depends on the seed and on the numbers that
+ * identify the work, never on which thread runs it or on what ran before,
+ * so repeated runs with the same seed perform exactly the same - whatever
+ * the number of threads - and any step can be re-run on its own.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
@@ -11,11 +18,13 @@ import java.util.Random;
 public class Randomizer
 {
     // The default seed for control of randomization.
-    private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
-    // Determine whether a shared random generator is to be provided.
-    private static final boolean useShared = true;
+    public static final long DEFAULT_SEED = 1111;
+
+    // Distinguish streams of different kinds that have the same numbers.
+    private static final long STEP_STREAM = 0x5354455000000000L;
+    private static final long TILE_STREAM = 0x54494c4500000000L;
+    private static final long ENTITY_STREAM = 0x454e545400000000L;
+    private static final long GROWTH_STREAM = 0x47524f5700000000L;
 
     /**
      * Constructor for objects of class Randomizer
@@ -25,28 +34,79 @@ public class Randomizer
     }
 
     /**
-     * Provide a random generator.
-     * @return A random object.
+     * Provide the stream for the draws made once per step.
+     * Step 0 is used for populating the field.
+     * @param seed The seed of the simulation.
+     * @param step The step number.
+     * @return A random stream.
+     */
+    public static SplittableRandom forStep(long seed, int step)
+    {
+        return new SplittableRandom(mix(seed, STEP_STREAM, step, 0));
+    }
+
+    /**
+     * Provide the stream for one stripe of the field in one phase of a step.
+     * @param seed The seed of the simulation.
+     * @param step The step number.
+     * @param phase The phase of the step (see ParallelStepEngine).
+     * @param tile The number of the stripe.
+     * @return A random stream.
+     */
+    public static SplittableRandom forTile(long seed, int step, int phase, int tile)
+    {
+        return new SplittableRandom(mix(seed, TILE_STREAM | phase, step, tile));
+    }
+
+    /**
+     * Provide the stream for a single entity in a step, identified by
+     * something unique within the step such as its cell.
+     * @param seed The seed of the simulation.
+     * @param step The step number.
+     * @param entity The identity of the entity.
+     * @return A random stream.
      */
-    public static Random getRandom()
+    public static SplittableRandom forEntity(long seed, int step, int entity)
     {
-        if(useShared) {
-            return rand;
-        }
-        else {
-            return new Random();
-        }
+        return new SplittableRandom(mix(seed, ENTITY_STREAM, step, entity));
     }
-    
+
+    /**
+     * Provide the stream for a plant that starts waiting for a growth
+     * stage in a step (see GrowthWheel).
+     * @param seed The seed of the simulation.
+     * @param step The step number.
+     * @param cell The plant's cell.
+     * @param stage The growth stage the plant is in.
+     * @return A random stream.
+     */
+    public static SplittableRandom forGrowth(long seed, int step, int cell, int stage)
+    {
+        return new SplittableRandom(mix(seed, GROWTH_STREAM | stage, step, cell));
+    }
+
+    /**
+     * Combine the seed and the numbers identifying a stream into the
+     * seed of that stream, using the SplitMix64 finalizer so that nearby
+     * inputs give unrelated outputs.
+     */
+    private static long mix(long seed, long kind, int step, int index)
+    {
+        long z = seed;
+        z = scramble(z ^ kind);
+        z = scramble(z ^ step);
+        z = scramble(z ^ index);
+        return z;
+    }
+
     /**
-     * Reset the randomization.
-     * This will have no effect if randomization is not 
-     * through a shared Random generator.
+     * The SplitMix64 finalizer.
      */
-    public static void reset()
+    private static long scramble(long z)
     {
-        if(useShared) {
-            rand.setSeed(SEED);
-        }
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 }
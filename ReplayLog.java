@@ -0,0 +1,400 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records a run so that any range of its steps can be run again exactly,
+ * e.g. to look into a sudden population crash.
+ *
+ * Every random draw of a step comes from streams derived from the seed,
+ * the step and the stripe (see Randomizer), so the seed and the stripe
+ * height decide the whole run; no draws or decisions need recording.
+ * The log holds those, a checkpoint every so many steps, and a short
+ * digest of every step (the weather and the count of every species and
+ * of infected animals) that a replay is checked against.
+ *
+ * The log is an append-only file. The simulation thread only encodes
+ * the records; a background thread writes them, and the checkpoints, in
+ * order. They are handed over through a short queue, so the simulation
+ * waits rather than piling up batches and checkpoints if the disk cannot
+ * keep up. The checkpoint of step K is saved next to the log as
+ * "<log>.K.ckpt", and is listed in the log once it is complete.
+ *
+ * Format (version 1, big-endian):
+ *   header:     int MAGIC, short VERSION, long seed, int depth, int width,
+ *               int stripe rows, short number of species
+ *   step:       byte 'S', int step, byte raining, int count of every
+ *               species, int infected count
+ *   checkpoint: byte 'C', int step
+ *
+ * Usage: java ReplayLog record <log> [size] [steps] [seed] [checkpoint interval]
+ *        java ReplayLog replay <log> <step> [threads]
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class ReplayLog implements SimulationListener
+{
+    // "FRSL": foxes-and-rabbits simulation log.
+    private static final int MAGIC = 0x4652534C;
+    public static final int VERSION = 1;
+    // The default number of steps between checkpoints.
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+
+    private static final byte STEP_RECORD = 'S';
+    private static final byte CHECKPOINT_RECORD = 'C';
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4 * 3 + 2;
+    private static final int STEP_RECORD_SIZE = 1 + 4 + 1 + 4 * (Species.COUNT + 1);
+    // The size of a batch of records handed to the writer.
+    private static final int BATCH_SIZE = 1 << 16;
+    // The number of writes that may wait for the writer.
+    private static final int QUEUE_CAPACITY = 4;
+    // Ends the writes handed to the writer.
+    private static final Write END = () -> {};
+
+    private final Path file;
+    private final Simulator simulator;
+    private final int checkpointInterval;
+    private final FileChannel channel;
+    // The writes waiting for the writer, in the order they were submitted.
+    private final BlockingQueue<Write> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Writes the batches and checkpoints in the order they are submitted.
+    private final Thread writer;
+    // The records not yet handed to the writer.
+    private ByteBuffer batch;
+    // The last step recorded, or -1 before the first.
+    private int lastStep = -1;
+    // The first failure of the writer, reported on the simulation thread.
+    private volatile IOException failure;
+
+    /**
+     * Start recording a simulation. The first step the simulation reports
+     * (normally step 0, when it is reset) is checkpointed, so that every
+     * later step can be replayed. A log records a single run.
+     * @param file The log file; it is replaced if it exists.
+     * @param simulator The simulation to record.
+     * @param checkpointInterval The number of steps between checkpoints.
+     * @throws IOException If the log cannot be created.
+     */
+    public ReplayLog(Path file, Simulator simulator, int checkpointInterval) throws IOException
+    {
+        if(checkpointInterval < 1) {
+            throw new IllegalArgumentException("The checkpoint interval must be at least 1");
+        }
+        this.file = file;
+        this.simulator = simulator;
+        this.checkpointInterval = checkpointInterval;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        writer = new Thread(this::writeAll, "replay-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        batch = ByteBuffer.allocate(BATCH_SIZE);
+        simulator.addListener(this);
+    }
+
+    /**
+     * Record a step, and checkpoint it if it is due.
+     */
+    @Override
+    public void stepCompleted(SimulationContext context, Field field, FieldStats stats)
+    {
+        if(failure != null) {
+            throw new UncheckedIOException("Writing the replay log failed", failure);
+        }
+        int step = context.getStep();
+        if(lastStep < 0) {
+            batch.putInt(MAGIC).putShort((short) VERSION).putLong(context.getSeed());
+            batch.putInt(field.getDepth()).putInt(field.getWidth()).putInt(simulator.getStripeRows());
+            batch.putShort((short) Species.COUNT);
+        }
+        else if(step <= lastStep) {
+            throw new IllegalStateException("A replay log records a single run; step " + step
+                                            + " came after step " + lastStep);
+        }
+
+        ensureRoom(STEP_RECORD_SIZE);
+        batch.put(STEP_RECORD).putInt(step).put((byte) (context.getWeather().isRaining() ? 1 : 0));
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            batch.putInt(field.getCount(speciesId));
+        }
+        batch.putInt(field.getInfectedCount());
+
+        if(lastStep < 0 || step % checkpointInterval == 0) {
+            // Encoding is the only part done here; the writer saves the
+            // checkpoint before it writes the batch that lists it.
+            ByteBuffer encoded = Checkpoint.encode(field, context, simulator.getStripeRows());
+            Path checkpoint = checkpointFile(file, step);
+            submit(() -> Checkpoint.save(checkpoint, encoded));
+            ensureRoom(5);
+            batch.put(CHECKPOINT_RECORD).putInt(step);
+        }
+        lastStep = step;
+    }
+
+    /**
+     * Hand the records of the run so far to the writer.
+     */
+    @Override
+    public void simulationStopped(SimulationContext context, Field field, boolean viable)
+    {
+        flushBatch();
+    }
+
+    /**
+     * Stop recording: write everything still pending and close the log.
+     * @throws IOException If anything could not be written.
+     */
+    public void close() throws IOException
+    {
+        simulator.removeListener(this);
+        flushBatch();
+        try {
+            queue.put(END);
+            writer.join();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the replay log", e);
+        }
+        finally {
+            channel.close();
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Recreate a recorded run at a given step: restore the nearest
+     * checkpoint at or before it, then run the remaining steps, checking
+     * each against the digest in the log.
+     * @param file The log file.
+     * @param step The step to replay to.
+     * @param threads The number of threads to run with; this does not
+     *                change the outcome.
+     * @return A headless simulation at the given step.
+     * @throws IOException If the log or a checkpoint cannot be read.
+     * @throws IllegalArgumentException If the step was not recorded.
+     * @throws IllegalStateException If the replay differs from the log.
+     */
+    public static Simulator replay(Path file, int step, int threads) throws IOException
+    {
+        ByteBuffer log;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(log.remaining() < HEADER_SIZE || log.getInt() != MAGIC) {
+            throw new IOException(file + " is not a replay log");
+        }
+        int version = log.getShort();
+        if(version != VERSION) {
+            throw new IOException(file + " has replay log version " + version
+                                  + ", but only version " + VERSION + " can be read");
+        }
+        log.getLong(); // seed
+        int depth = log.getInt();
+        int width = log.getInt();
+        int stripeRows = log.getInt();
+        if(log.getShort() != Species.COUNT) {
+            throw new IOException(file + " was recorded with a different set of species");
+        }
+
+        // Read the records, stopping at a record cut short by a crash.
+        List<int[]> digests = new ArrayList<>();
+        int firstStep = -1;
+        int checkpointStep = -1;
+        try {
+            while(log.hasRemaining()) {
+                byte tag = log.get();
+                int recordStep = log.getInt();
+                if(tag == STEP_RECORD) {
+                    int[] digest = new int[Species.COUNT + 2];
+                    for(int i = 0; i < digest.length; i++) {
+                        digest[i] = i == 0 ? log.get() : log.getInt();
+                    }
+                    if(firstStep < 0) {
+                        firstStep = recordStep;
+                    }
+                    digests.add(digest);
+                }
+                else if(tag == CHECKPOINT_RECORD) {
+                    if(recordStep <= step) {
+                        checkpointStep = recordStep;
+                    }
+                }
+                else {
+                    throw new IOException(file + " holds an unknown record");
+                }
+            }
+        }
+        catch(BufferUnderflowException e) {
+            // The rest of the log was never written.
+        }
+        if(checkpointStep < 0 || step - firstStep >= digests.size()) {
+            throw new IllegalArgumentException("Step " + step + " is not in " + file);
+        }
+
+        Simulator simulator = new Simulator(depth, width, false);
+        simulator.setParallelism(threads, stripeRows);
+        simulator.restoreCheckpoint(checkpointFile(file, checkpointStep));
+        while(simulator.getStep() < step) {
+            simulator.simulateOneStep();
+            int[] digest = digests.get(simulator.getStep() - firstStep);
+            if(!Arrays.equals(digest, digestOf(simulator))) {
+                throw new IllegalStateException("The replay differs from " + file + " at step "
+                                                + simulator.getStep());
+            }
+        }
+        return simulator;
+    }
+
+    /**
+     * Record a headless run, or replay a recorded one to a step and
+     * print its population.
+     * @param args See the class comment.
+     * @throws IOException If the log cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length >= 2 && args[0].equals("record")) {
+            Path file = Paths.get(args[1]);
+            int size = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+            int steps = args.length > 3 ? Integer.parseInt(args[3]) : 700;
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : Randomizer.DEFAULT_SEED;
+            int interval = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_CHECKPOINT_INTERVAL;
+
+            Simulator simulator = new Simulator(size, size, false);
+            simulator.setSeed(seed);
+            ReplayLog log = new ReplayLog(file, simulator, interval);
+            simulator.reset();
+            simulator.simulate(steps);
+            log.close();
+            System.out.println("Recorded steps 0 to " + simulator.getStep() + " in " + file);
+        }
+        else if(args.length >= 3 && args[0].equals("replay")) {
+            int step = Integer.parseInt(args[2]);
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+            Simulator simulator = replay(Paths.get(args[1]), step, threads);
+            System.out.println("Step " + step + ": "
+                               + new FieldStats().getPopulationDetails(simulator.getField()));
+        }
+        else {
+            System.out.println("Usage: java ReplayLog record <log> [size] [steps] [seed] [checkpoint interval]");
+            System.out.println("       java ReplayLog replay <log> <step> [threads]");
+        }
+    }
+
+    /**
+     * Return the file the checkpoint of a step is saved in.
+     */
+    private static Path checkpointFile(Path file, int step)
+    {
+        return file.resolveSibling(file.getFileName() + "." + step + ".ckpt");
+    }
+
+    /**
+     * Return the digest of the simulation's current step, as recorded.
+     */
+    private static int[] digestOf(Simulator simulator)
+    {
+        Field field = simulator.getField();
+        int[] digest = new int[Species.COUNT + 2];
+        digest[0] = simulator.getContext().getWeather().isRaining() ? 1 : 0;
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            digest[speciesId + 1] = field.getCount(speciesId);
+        }
+        digest[Species.COUNT + 1] = field.getInfectedCount();
+        return digest;
+    }
+
+    /**
+     * Hand the batch to the writer if it cannot hold the given number of bytes.
+     */
+    private void ensureRoom(int bytes)
+    {
+        if(batch.remaining() < bytes) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Hand the records so far to the writer and start a new batch.
+     */
+    private void flushBatch()
+    {
+        if(batch.position() == 0) {
+            return;
+        }
+        ByteBuffer records = batch;
+        records.flip();
+        batch = ByteBuffer.allocate(BATCH_SIZE);
+        submit(() -> {
+            while(records.hasRemaining()) {
+                channel.write(records);
+            }
+        });
+    }
+
+    /**
+     * Queue a write for the writer thread, waiting while the queue is
+     * full. If the wait is interrupted the write is lost, so the log fails
+     * (see failure) rather than miss records.
+     */
+    private void submit(Write write)
+    {
+        try {
+            queue.put(write);
+        }
+        catch(InterruptedException e) {
+            // keep the interrupt for the simulation loop to notice
+            Thread.currentThread().interrupt();
+            if(failure == null) {
+                failure = new InterruptedIOException("Interrupted while handing over a write to the replay log");
+            }
+        }
+    }
+
+    /**
+     * Run the writes from the queue until the end of the log, remembering
+     * the first failure.
+     */
+    private void writeAll()
+    {
+        try {
+            for(Write next = queue.take(); next != END; next = queue.take()) {
+                if(failure == null) {
+                    try {
+                        next.run();
+                    }
+                    catch(IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            // the log is abandoned
+        }
+    }
+
+    /**
+     * A write that may fail.
+     */
+    private interface Write
+    {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * The state a simulation shares with everything in it: the seed its
+ * random streams come from, the current step, the clock and the
+ * weather. Each simulation has a context of its own, which is passed
+ * to the animals and plants as they act, so several simulations can
+ * run side by side in one program without affecting each other.
+ *
+ * The context only changes between steps, on the simulation thread.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class SimulationContext
+{
+    // The seed all random streams of the simulation are derived from.
+    private final long seed;
+    // The time of day and the date.
+    private final TimeKeeper clock;
+    // Raining or sunny.
+    private final Weather weather;
+    // The number of the current step; 0 before the first step.
+    private int step;
+
+    /**
+     * Create the context of a simulation that has not run yet.
+     * @param seed The seed to derive all random streams from.
+     */
+    public SimulationContext(long seed)
+    {
+        this.seed = seed;
+        clock = new TimeKeeper();
+        weather = new Weather();
+    }
+
+    /**
+     * Create the context of a simulation at a given step, e.g. one
+     * restored from a checkpoint.
+     * @param seed The seed to derive all random streams from.
+     * @param step The number of the current step.
+     * @param clock The clock at that step.
+     * @param weather The weather at that step.
+     */
+    public SimulationContext(long seed, int step, TimeKeeper clock, Weather weather)
+    {
+        this.seed = seed;
+        this.step = step;
+        this.clock = clock;
+        this.weather = weather;
+    }
+
+    /**
+     * Move on to the next step: choose its weather, then advance the clock.
+     */
+    public void advance()
+    {
+        step++;
+        weather.updateWeather(clock.getCurrentSeason(), Randomizer.forStep(seed, step));
+        clock.advanceTime();
+    }
+
+    /**
+     * @return The seed of the simulation.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return The number of the current step.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The simulation's clock.
+     */
+    public TimeKeeper getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * @return The weather of the current step.
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+}
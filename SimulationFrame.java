@@ -0,0 +1,135 @@
+/**
+ * An immutable picture of the simulation after one step, taken on the
+ * simulation thread so that it can be drawn later on another thread
+ * while the simulation carries on.
+ *
+ * Each cell is stored as one byte: 0 for an empty cell, otherwise the
+ * species id of the occupant plus one, with INFECTED added for an
+ * infected animal. An animal hides a plant in the same cell.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public final class SimulationFrame
+{
+    // The value of an empty cell.
+    public static final int EMPTY = 0;
+    // Added to the value of a cell holding an infected animal.
+    public static final int INFECTED = 0x40;
+
+    private final int step;
+    private final String timeString;
+    private final boolean raining;
+    private final String populationDetails;
+    private final int depth, width;
+    private final byte[] cells;
+
+    /**
+     * Take a picture of a field.
+     * @param context The step number, clock and weather of the simulation.
+     * @param field The field after the step.
+     * @param stats The counts of the field.
+     * @return The frame.
+     */
+    public static SimulationFrame capture(SimulationContext context, Field field, FieldStats stats)
+    {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        byte[] cells = new byte[depth * width];
+        int index = 0;
+        for(int row = 0; row < depth; row++) {
+            for(int col = 0; col < width; col++) {
+                int cell = Location.cellOf(row, col);
+                Animal animal = field.getAnimalAt(cell);
+                if(animal != null) {
+                    int value = animal.getSpeciesId() + 1;
+                    if(animal.isInfected()) {
+                        value += INFECTED;
+                    }
+                    cells[index] = (byte) value;
+                }
+                else {
+                    Plant plant = field.getPlantAt(cell);
+                    if(plant != null) {
+                        cells[index] = (byte) (plant.getSpeciesId() + 1);
+                    }
+                }
+                index++;
+            }
+        }
+        return new SimulationFrame(context.getStep(), context.getClock().getTimeString(),
+                                   context.getWeather().isRaining(),
+                                   stats.getPopulationDetails(field), depth, width, cells);
+    }
+
+    private SimulationFrame(int step, String timeString, boolean raining, String populationDetails,
+                            int depth, int width, byte[] cells)
+    {
+        this.step = step;
+        this.timeString = timeString;
+        this.raining = raining;
+        this.populationDetails = populationDetails;
+        this.depth = depth;
+        this.width = width;
+        this.cells = cells;
+    }
+
+    /**
+     * @return The number of the step the frame shows.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The date and time of day at the step.
+     */
+    public String getTimeString()
+    {
+        return timeString;
+    }
+
+    /**
+     * @return Whether it was raining.
+     */
+    public boolean isRaining()
+    {
+        return raining;
+    }
+
+    /**
+     * @return The population counts as text.
+     */
+    public String getPopulationDetails()
+    {
+        return populationDetails;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Return the value of a cell (see the class comment).
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The value of the cell.
+     */
+    public int getCell(int row, int col)
+    {
+        return cells[row * width + col];
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the simulation from the command line without a window, printing
+ * the population every so many steps and when the run stops.
+ *
+ * Usage: java SimulationLauncher [size] [steps] [seed] [threads] [steps/s] [checkpoint] [metrics]
+ *
+ * Without a rate, or with a rate of 0, the steps run as fast as possible.
+ * With a checkpoint file, the run continues from the file if it exists
+ * (ignoring the size and seed), and saves its final state to the file;
+ * "-" means no checkpoint. With a metrics file, the metrics of every
+ * step are recorded in it (see MetricsRecorder). A field of more than
+ * SPARSE_SIZE cells on a side is populated sparsely, with only the
+ * starting clusters (see Simulator), so that it can be built at all.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class SimulationLauncher implements SimulationListener
+{
+    // How often the population is printed, in steps.
+    private static final int REPORT_INTERVAL = 50;
+    // The largest side of a field that is filled cell by cell at the start.
+    private static final int SPARSE_SIZE = 4096;
+
+    /**
+     * Run a headless simulation.
+     * @param args Optional field size, number of steps, seed, number of
+     *             threads, steps per second, checkpoint file and
+     *             metrics file.
+     * @throws IOException If the checkpoint cannot be read or written, or
+     *                     the metrics cannot be written.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 120;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 700;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : Randomizer.DEFAULT_SEED;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        double rate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+        Path checkpoint = args.length > 5 && !args[5].equals("-") ? Paths.get(args[5]) : null;
+        Path metrics = args.length > 6 ? Paths.get(args[6]) : null;
+
+        Simulator simulator = new Simulator(size, size, false, size > SPARSE_SIZE);
+        simulator.setSeed(seed);
+        simulator.setParallelism(threads, Simulator.DEFAULT_STRIPE_ROWS);
+        simulator.addListener(new SimulationLauncher());
+        if(rate > 0) {
+            simulator.setScheduler(new StepScheduler(StepScheduler.Mode.FIXED_RATE, rate));
+        }
+        System.out.println("Field " + size + "x" + size + ", " + steps + " steps, seed "
+                           + seed + ", " + threads + " thread(s)");
+        if(checkpoint != null && Files.exists(checkpoint)) {
+            simulator.restoreCheckpoint(checkpoint);
+            System.out.println("Continuing from " + checkpoint + " at step " + simulator.getStep());
+        }
+        else {
+            simulator.reset();
+        }
+        MetricsRecorder recorder = metrics != null ? new MetricsRecorder(metrics, simulator) : null;
+        simulator.simulate(steps);
+        if(recorder != null) {
+            recorder.close();
+        }
+        System.out.println(simulator.getScheduler().getRateDetails());
+        if(checkpoint != null) {
+            simulator.saveCheckpoint(checkpoint);
+            System.out.println("Saved step " + simulator.getStep() + " to " + checkpoint);
+        }
+    }
+
+    /**
+     * Print the population every REPORT_INTERVAL steps.
+     */
+    @Override
+    public void stepCompleted(SimulationContext context, Field field, FieldStats stats)
+    {
+        if(context.getStep() % REPORT_INTERVAL == 0) {
+            System.out.println("Step " + context.getStep() + ": " + stats.getPopulationDetails(field));
+        }
+    }
+
+    /**
+     * Print how the run ended.
+     */
+    @Override
+    public void simulationStopped(SimulationContext context, Field field, boolean viable)
+    {
+        int step = context.getStep();
+        System.out.println(viable ? "Finished after step " + step
+                                  : "No longer viable after step " + step);
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Something that wants to follow a running simulation, such as the
+ * graphical view or a console report. Listeners are called on the
+ * simulation thread after every step, and must not change the field.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public interface SimulationListener
+{
+    /**
+     * Called when a step has been completed, and once with step 0
+     * when the simulation has been reset.
+     * @param context The step number, clock and weather of the simulation.
+     * @param field The field after the step.
+     * @param stats The counts of the field after the step.
+     */
+    void stepCompleted(SimulationContext context, Field field, FieldStats stats);
+
+    /**
+     * Tell whether this listener only shows the simulation. A display may
+     * miss steps when the simulation has fallen behind real time.
+     * @return true for a display; false by default.
+     */
+    default boolean isDisplay()
+    {
+        return false;
+    }
+
+    /**
+     * Called when a run of several steps stops, either because all steps
+     * have been run or because the simulation is no longer viable.
+     * @param context The simulation's context after the last step.
+     * @param field The field after the last step.
+     * @param viable Whether more than one species is still alive.
+     */
+    default void simulationStopped(SimulationContext context, Field field, boolean viable)
+    {
+    }
+}
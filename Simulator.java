@@ -1,4 +1,8 @@
-import java.util.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
 
 /**
 *
@@ -14,25 +18,36 @@ public class Simulator
     private static final int DEFAULT_WIDTH = 120;
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 120;
-   
-    // Constants for creation probabilities
-    private static final double BEAR_CREATION_PROBABILITY = 0.02;
-    private static final double OWL_CREATION_PROBABILITY = 0.02;
-    private static final double SNAKE_CREATION_PROBABILITY = 0.02;
-    private static final double MOUSE_CREATION_PROBABILITY = 0.08;
-    private static final double DEER_CREATION_PROBABILITY = 0.05;
-    private static final double LIZARD_CREATION_PROBABILITY = 0.03;
-    private static final double BERRY_CREATION_PROBABILITY = 0.09;
-    private static final double GRASS_CREATION_PROBABILITY = 0;   // grass will only spread in random patches
+
+    // The default height of the stripes the field is updated in.
+    public static final int DEFAULT_STRIPE_ROWS = 16;
+    // The steps per second when the simulation is shown in a window.
+    private static final double VIEW_STEPS_PER_SECOND = 20;
     
     // The current state of the field.
     private Field field;
-    // The current step of the simulation.
-    private int step;
-    private int timeOfDay = 0; // 0 = Day, 1 = Night
-    private Weather weather = new Weather(); // weather (raining or sunny)
-    // A graphical view of the simulation.
+    // The stale field from the previous step, cleared and reused as the next state.
+    private Field spareField;
+    // Whether to reuse spareField instead of allocating a new field every step.
+    private boolean doubleBuffered = true;
+    // Updates the field stripe by stripe, on one or more threads.
+    private ParallelStepEngine engine = new ParallelStepEngine(1, DEFAULT_STRIPE_ROWS);
+    // The seed all random streams of the simulation are derived from.
+    private long seed = Randomizer.DEFAULT_SEED;
+    // The step, clock and weather of the simulation, renewed by reset.
+    private SimulationContext context;
+    // Statistics on the current field.
+    private final FieldStats stats = new FieldStats();
+    // Those following the simulation, including the graphical view if any.
+    private final List<SimulationListener> listeners = new ArrayList<>();
+    // A graphical view of the simulation, or null when running headless.
     private final SimulatorView view;
+    // Decides when the next step of a run may start.
+    private StepScheduler scheduler;
+    // How long the last step took to compute, in nanoseconds.
+    private long lastStepNanos;
+    // Whether populate only places the starting clusters.
+    private final boolean sparse;
 
     /**
      * Construct a simulation field with default size.
@@ -43,11 +58,42 @@ public class Simulator
     }
     
     /**
-     * Create a simulation field with the given size.
+     * Create a simulation field with the given size, shown in a window.
      * @param depth Depth of the field. Must be greater than zero.
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+    
+    /**
+     * Create a simulation field with the given size.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showView Whether to show the simulation in a window. Without
+     *                 a window the simulation can only be followed through
+     *                 listeners, and runs as fast as possible; with a window
+     *                 it runs at 20 steps per second.
+     */
+    public Simulator(int depth, int width, boolean showView)
+    {
+        this(depth, width, showView, false);
+    }
+    
+    /**
+     * Create a simulation field with the given size, populated sparsely
+     * if wanted. Normally a chance of a new member is drawn for every cell
+     * of the field, which fills about a third of the cells; a sparse field
+     * only gets the starting clusters of each species. Only a sparse field
+     * can be very large, e.g. 50,000 cells on a side, since the time and
+     * memory used then grow with the clusters rather than the area.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showView Whether to show the simulation in a window.
+     * @param sparse Whether to only place the starting clusters.
+     */
+    public Simulator(int depth, int width, boolean showView, boolean sparse)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be >= zero.");
@@ -56,8 +102,18 @@ public class Simulator
             width = DEFAULT_WIDTH;
         }
         
+        this.sparse = sparse;
         field = new Field(depth, width);
-        view = new SimulatorView(depth, width);
+        spareField = new Field(depth, width, field.getPopulation(), field.getPlantLayer());
+        if(showView) {
+            view = new SimulatorView(depth, width);
+            listeners.add(view);
+            scheduler = new StepScheduler(StepScheduler.Mode.FIXED_RATE, VIEW_STEPS_PER_SECOND);
+        }
+        else {
+            view = null;
+            scheduler = new StepScheduler();
+        }
         reset();
     }
     
@@ -76,9 +132,21 @@ public class Simulator
      * @param numSteps The number of steps to run for.
      */
     public void simulate(int numSteps) {
-        for(int step = 1; step <= numSteps && view.isViable(field); step++) {
-            simulateOneStep();
-            delay(50);  // adjust this to change simulation speed
+        boolean viable = isViable();
+        scheduler.start();
+        try {
+            for(int step = 1; step <= numSteps && viable; step++) {
+                boolean show = scheduler.awaitNextStep();
+                runOneStep(show);
+                viable = isViable();
+            }
+        }
+        catch(InterruptedException e) {
+            // stop the run, but let the caller know it was interrupted
+            Thread.currentThread().interrupt();
+        }
+        for(SimulationListener listener : listeners) {
+            listener.simulationStopped(context, field, viable);
         }
     }
     
@@ -88,105 +156,269 @@ public class Simulator
      */
     public void simulateOneStep()
     {
-        step++;
-        String currentSeason = TimeKeeper.getCurrentSeason();
-        weather.updateWeather(currentSeason); // Update weather
-        TimeKeeper.advanceTime(); // Advance time (toggle day/night)
+        runOneStep(true);
+    }
+    
+    /**
+     * Run a single step.
+     * @param show Whether displays should show the step; other listeners
+     *             are told about every step.
+     */
+    private void runOneStep(boolean show)
+    {
+        long start = System.nanoTime();
+        context.advance(); // Update the weather and advance the time (toggle day/night)
 
         // Provide space for newborn animals.
-        Field nextField = new Field(field.getDepth(), field.getWidth());
-        
-        // Update all animals
-        for(Animal animal : field.getAnimals()) {
-            if(animal.isAlive()) {
-                animal.act(field, nextField);
-                nextField.placeAnimal(animal, animal.getLocation()); // ensure every animal moves
-            }
+        Field nextField;
+        if(doubleBuffered) {
+            nextField = spareField;
+        }
+        else {
+            nextField = new Field(field.getDepth(), field.getWidth(), field.getPopulation(),
+                                  field.getPlantLayer());
         }
         
-        // Update all plants
-        for(Plant plant : field.getPlants()) {
-            if(plant.isAlive()) {
-                plant.act(field, nextField, weather);
-            }
-        }       
+        // Age the animals, then update all animals and plants.
+        engine.step(field, nextField, context);
         
-        // Replace the old state with the new one.
+        // Replace the old state with the new one, keeping the old
+        // one (emptied) for the next step.
+        spareField = field;
+        spareField.clear();
         field = nextField;
+        lastStepNanos = System.nanoTime() - start;
         
-        view.showStatus(step, field, weather);
+        notifyListeners(show);
     }
         
+    /**
+     * Choose whether the simulation swaps between two fields or
+     * allocates a fresh field for every step.
+     * @param doubleBuffered true to reuse the previous step's field.
+     */
+    public void setDoubleBuffered(boolean doubleBuffered)
+    {
+        this.doubleBuffered = doubleBuffered;
+    }
+    
+    /**
+     * Choose how many threads update the field. The field is always
+     * processed in stripes by a ParallelStepEngine; the number of threads
+     * does not change the outcome of a run, but the stripe height does.
+     * @param threads The number of threads; 1 updates the field on the
+     *                simulation thread.
+     * @param stripeRows The height of a stripe in rows (at least 2).
+     */
+    public void setParallelism(int threads, int stripeRows)
+    {
+        engine.shutdown();
+        engine = new ParallelStepEngine(threads, stripeRows);
+    }
+    
+    /**
+     * @return The height of the stripes the field is updated in.
+     */
+    public int getStripeRows()
+    {
+        return engine.getStripeRows();
+    }
+    
+    /**
+     * Set the seed for the next reset. Two runs with the same seed
+     * and stripe height are identical.
+     * @param seed The seed to derive all random streams from.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+    
+    /**
+     * @return The seed of the simulation.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+    
     /**
      * Reset the simulation to a starting position.
      */
     public void reset()
     {
-        step = 0;
+        context = new SimulationContext(seed);
+        lastStepNanos = 0;
         populate();
-        view.showStatus(step, field, weather);
+        notifyListeners(true);
+    }
+    
+    /**
+     * Save the complete state of the simulation, so that it can later be
+     * continued exactly from this step (see Checkpoint).
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCheckpoint(Path file) throws IOException
+    {
+        Checkpoint.save(file, field, context, getStripeRows());
+    }
+    
+    /**
+     * Replace the state of the simulation with a saved one. The
+     * simulation continues with the saved seed and stripe height.
+     * @param file The checkpoint file.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the simulation is shown in a
+     *         window of a different size than the saved field.
+     */
+    public void restoreCheckpoint(Path file) throws IOException
+    {
+        Checkpoint checkpoint = Checkpoint.load(file);
+        Field restored = checkpoint.getField();
+        if(view != null && (restored.getDepth() != field.getDepth() || restored.getWidth() != field.getWidth())) {
+            throw new IllegalArgumentException("The checkpoint is for a " + restored.getDepth() + "x"
+                                               + restored.getWidth() + " field");
+        }
+        field.getPopulation().clear();
+        field = restored;
+        spareField = new Field(field.getDepth(), field.getWidth(), field.getPopulation(),
+                               field.getPlantLayer());
+        context = checkpoint.getContext();
+        seed = context.getSeed();
+        lastStepNanos = 0;
+        if(checkpoint.getStripeRows() != engine.getStripeRows()) {
+            setParallelism(engine.getThreads(), checkpoint.getStripeRows());
+        }
+        notifyListeners(true);
     }
     
     /**
-     * Randomly populate the field with foxes and rabbits.
+     * Start telling a listener about every step.
+     * @param listener The listener to add.
+     */
+    public void addListener(SimulationListener listener)
+    {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Stop telling a listener about steps.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(SimulationListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        return stats.isViable(field);
+    }
+    
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return context.getStep();
+    }
+    
+    /**
+     * @return How long the last step took to compute (not counting the
+     *         listeners or the pacing), in nanoseconds.
+     */
+    public long getLastStepNanos()
+    {
+        return lastStepNanos;
+    }
+    
+    /**
+     * @return The step, clock and weather of the simulation.
+     */
+    public SimulationContext getContext()
+    {
+        return context;
+    }
+    
+    /**
+     * @return The current state of the field.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+    
+    /**
+     * Choose how the steps of a run are paced.
+     * @param scheduler The scheduler for the following runs.
+     */
+    public void setScheduler(StepScheduler scheduler)
+    {
+        this.scheduler = scheduler;
+    }
+    
+    /**
+     * Return the scheduler of the runs, e.g. to pause or resume a run
+     * from another thread or to see the rate achieved.
+     * @return The scheduler.
+     */
+    public StepScheduler getScheduler()
+    {
+        return scheduler;
+    }
+    
+    /**
+     * Pass the new state to the listeners.
+     * @param show Whether to pass it to displays too.
+     */
+    private void notifyListeners(boolean show)
+    {
+        for(SimulationListener listener : listeners) {
+            if(show || !listener.isDisplay()) {
+                listener.stepCompleted(context, field, stats);
+            }
+        }
+    }
+    
+    /**
+     * Randomly populate the field with foxes and rabbits. A sparse field
+     * only gets the starting clusters.
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
+        RandomGenerator rand = Randomizer.forStep(seed, 0);
         field.clear();
+        spareField.clear();
+        field.getPopulation().clear();
+        field.getPlantLayer().clear();
         
         // place random clusters of grass and animals scattered around the map.
-        field.placeRandomGrassPatches(30, 10, 20);
-        field.placeRandomAnimalClusters(40, 30, 40, Mouse.class); // 10 clusters of mice, size 6-12
-        field.placeRandomAnimalClusters(30, 20, 30, Deer.class); // 8 clusters of deer, size 10-15
-        field.placeRandomAnimalClusters(20, 10, 20, Owl.class); // 4 clusters of owls, size 2-6
-        field.placeRandomAnimalClusters(20, 10, 15, Snake.class); // 5 clusters of snakes, size 3-7
-        field.placeRandomAnimalClusters(3, 3, 6, Bear.class);  // 6 clusters of bears, size 4-8
+        for(int speciesId : Species.getPlacementOrder()) {
+            field.placeRandomClusters(speciesId, rand);
+        }
+        if(sparse) {
+            return;
+        }
         
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                Location location = new Location(row, col);
                 double chance = rand.nextDouble();  // Generate one random number for this location
-                
-                if(chance <= BEAR_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Bear(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Owl(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Snake(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY + MOUSE_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Mouse(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY + MOUSE_CREATION_PROBABILITY + DEER_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Deer(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY + MOUSE_CREATION_PROBABILITY + DEER_CREATION_PROBABILITY + LIZARD_CREATION_PROBABILITY) {
-                    field.placeAnimal(new Lizard(true, field, location), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY + MOUSE_CREATION_PROBABILITY + DEER_CREATION_PROBABILITY + LIZARD_CREATION_PROBABILITY +BERRY_CREATION_PROBABILITY) {
-                    field.placePlant(new Berry(location, true), location);
-                }
-                else if(chance <= BEAR_CREATION_PROBABILITY + OWL_CREATION_PROBABILITY + SNAKE_CREATION_PROBABILITY + MOUSE_CREATION_PROBABILITY + DEER_CREATION_PROBABILITY + LIZARD_CREATION_PROBABILITY + BERRY_CREATION_PROBABILITY + GRASS_CREATION_PROBABILITY) {
-                    field.placePlant(new Grass(location, true), location);
+                int speciesId = Species.pickByCreationProbability(chance);
+                if(speciesId != Species.NONE) {
+                    Location location = new Location(row, col);
+                    if(Species.isAnimal(speciesId)) {
+                        field.placeAnimal(Species.createAnimal(speciesId, true, field, location, rand), location);
+                    }
+                    else {
+                        field.placePlant(Species.createPlant(speciesId, location, true), location);
+                    }
                 }
             }
         }
     }
-
-    /**
-     * Pause for a given time.
-     * @param milliseconds The time to pause for, in milliseconds
-     */
-    private void delay(int milliseconds)
-    {
-        try {
-             Thread.sleep(milliseconds);
-        }
-        catch(InterruptedException e) {
-            // ignore
-        }
-    }
 }
@@ -1,7 +1,8 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Provides a graphical view of the simulation field.
@@ -15,16 +16,21 @@ import java.util.Map;
  * - Population statistics
  * - Weather indicator
  * 
+ * The simulation thread only takes an immutable SimulationFrame of each
+ * step and hands it over; the frame is drawn later on the Swing event
+ * thread. Only the latest frame is kept: if the simulation publishes a
+ * new frame before the previous one was drawn, the previous one is
+ * dropped and counted, so the simulation never waits for the display.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.1
  */
-public class SimulatorView extends JFrame
+public class SimulatorView extends JFrame implements SimulationListener
 {
-    // Colors used for empty locations.
-    private static final Color EMPTY_COLOR = Color.white;
-
-    // Color used for objects that have no defined color.
-    private static final Color UNKNOWN_COLOR = Color.gray;
+    // The size of a cell on screen, in pixels.
+    private static final int GRID_VIEW_SCALING_FACTOR = 6;
+    // The largest image made for a field, in pixels along a side.
+    private static final int MAX_IMAGE_SIZE = 1200;
 
     private final String STEP_PREFIX = "Step: ";
     private final String POPULATION_PREFIX = "Population: ";
@@ -32,10 +38,12 @@ public class SimulatorView extends JFrame
     private final JLabel population;
     private final FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private final Map<Class<?>, Color> colors;
-    // A statistics object computing and storing simulation information
-    private final FieldStats stats;
+    // The image of the field, drawn cell by cell from the frames
+    private final FieldRaster raster;
+    // The frame waiting to be drawn, or null if the last one has been drawn.
+    private final AtomicReference<SimulationFrame> pendingFrame = new AtomicReference<>();
+    // The number of frames replaced before they could be drawn.
+    private final AtomicLong droppedFrames = new AtomicLong();
 
     /**
      * Create a view of the given width and height.
@@ -44,20 +52,11 @@ public class SimulatorView extends JFrame
      */
     public SimulatorView(int height, int width)
     {
-        stats = new FieldStats();
-        colors = new LinkedHashMap<>();
+        raster = new FieldRaster(height, width, cellSizeFor(height, width));
         
-        // Animals
-        setColor(Bear.class, new Color(139, 69, 19));      // Saddle Brown for Bear
-        setColor(Owl.class, new Color(128, 128, 128));     // Gray for Owl
-        setColor(Snake.class, new Color(50, 205, 50));     // Lime Green for Snake
-        setColor(Deer.class, new Color(205, 133, 63));     // Peru light brown for Deer
-        setColor(Mouse.class, new Color(255, 215, 0));     // Gold for Mouse
-        setColor(Lizard.class, new Color(61, 127, 242));     // Light blue for Lizard
-
-        // Plants
-        setColor(Berry.class, new Color(148, 0, 211));     // Dark Violet for Berry
-        setColor(Grass.class, new Color(0, 100, 0));       // Dark Green for Grass
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            setColor(speciesId, Species.getColor(speciesId));
+        }
 
         setTitle("Predator/Prey Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -78,80 +77,95 @@ public class SimulatorView extends JFrame
     }
     
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Define a color to be used for a given species.
+     * @param speciesId The species (see Species).
+     * @param color The color to be used for the given species.
+     */
+    public void setColor(int speciesId, Color color)
+    {
+        raster.setColor(speciesId, color);
+    }
+
+    /**
+     * Choose the size of a cell in the image of the field: as big as
+     * the usual scaling factor, unless that makes the image too big.
+     */
+    private static int cellSizeFor(int height, int width)
+    {
+        int fit = MAX_IMAGE_SIZE / Math.max(height, width);
+        return Math.max(1, Math.min(GRID_VIEW_SCALING_FACTOR, fit));
+    }
+
+    /**
+     * Show the field after each step.
+     */
+    @Override
+    public void stepCompleted(SimulationContext context, Field field, FieldStats stats)
+    {
+        publish(SimulationFrame.capture(context, field, stats));
+    }
+
+    /**
+     * The view only shows the simulation, so it may miss steps.
      */
-    public void setColor(Class<?> animalClass, Color color)
+    @Override
+    public boolean isDisplay()
     {
-        colors.put(animalClass, color);
+        return true;
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * Hand a frame over to be drawn on the event thread. If the previous
+     * frame has not been drawn yet it is replaced, and counted as dropped.
+     * @param frame The frame to show.
      */
-    private Color getColor(Class<?> animalClass)
+    public void publish(SimulationFrame frame)
     {
-        Color col = colors.get(animalClass);
-        if(col == null) {
-            // no color defined for this class
-            return UNKNOWN_COLOR;
+        if(pendingFrame.getAndSet(frame) == null) {
+            SwingUtilities.invokeLater(this::drawPendingFrame);
         }
         else {
-            return col;
+            droppedFrames.incrementAndGet();
         }
     }
 
     /**
-     * Show the current status of the field.
-     * @param step Which iteration step it is.
-     * @param field The field whose status is to be displayed.
+     * @return The number of frames that were replaced before being drawn.
      */
-    public void showStatus(int step, Field field, Weather weather)
+    public long getDroppedFrames()
     {
-        if(!isVisible()) {
-            setVisible(true);
-        }
-        
-        stepLabel.setText(STEP_PREFIX + step + " | " + TimeKeeper.getTimeString() + 
-                  (weather.isRaining() ? " | 🌧️ Rain" : ""));
+        return droppedFrames.get();
+    }
 
-        stats.reset();
-        
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Location location = new Location(row, col);
-                Animal animal = field.getAnimalAt(location);
-                Plant plant = field.getPlantAt(location);
-                
-                if(animal != null) {
-                    stats.incrementCount(animal.getClass());
-                    fieldView.drawMark(col, row, getColor(animal.getClass()), animal.isInfected());
-                }
-                else if(plant != null) {
-                    stats.incrementCount(plant.getClass());
-                    fieldView.drawMark(col, row, getColor(plant.getClass()),false);
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR, false);
-                }
-            }
+    /**
+     * Draw the latest frame. Runs on the event thread.
+     */
+    private void drawPendingFrame()
+    {
+        SimulationFrame frame = pendingFrame.getAndSet(null);
+        if(frame != null) {
+            showStatus(frame);
         }
-        stats.countFinished();
-
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
-        fieldView.repaint();
     }
 
     /**
-     * Determine whether the simulation should continue to run.
-     * @return true If there is more than one species alive.
+     * Show a frame. Must be called on the event thread.
+     * @param frame The frame to be displayed.
      */
-    public boolean isViable(Field field)
+    private void showStatus(SimulationFrame frame)
     {
-        return stats.isViable(field);
+        if(!isVisible()) {
+            setVisible(true);
+        }
+        
+        stepLabel.setText(STEP_PREFIX + frame.getStep() + " | " + frame.getTimeString() + 
+                  (frame.isRaining() ? " | 🌧️ Rain" : "") +
+                  " | Dropped frames: " + droppedFrames.get());
+
+        population.setText(POPULATION_PREFIX + frame.getPopulationDetails());
+        if(raster.update(frame)) {
+            fieldView.repaintImage(raster.getDirtyBounds());
+        }
     }
     
     /**
@@ -164,13 +178,7 @@ public class SimulatorView extends JFrame
      */
     private class FieldView extends JPanel
     {
-        private final int GRID_VIEW_SCALING_FACTOR = 6;
-
         private final int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
 
         /**
          * Create a new FieldView component.
@@ -179,7 +187,6 @@ public class SimulatorView extends JFrame
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
         }
 
         /**
@@ -187,65 +194,33 @@ public class SimulatorView extends JFrame
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                                 gridHeight * GRID_VIEW_SCALING_FACTOR);
+            int cellSize = cellSizeFor(gridHeight, gridWidth);
+            return new Dimension(gridWidth * cellSize, gridHeight * cellSize);
         }
 
         /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
-         */
-        public void preparePaint()
-        {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
-                }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
-                }
-            }
-        }
-        
-        /**
-         * Paint on grid location on this field in a given color.
+         * Repaint the part of the component showing a part of the image.
+         * @param bounds The changed part of the image, in image pixels.
          */
-        public void drawMark(int x, int y, Color color, boolean infected)
+        public void repaintImage(Rectangle bounds)
         {
-            g.setColor(EMPTY_COLOR); // clear old colour marks
-            g.fillRect(x * xScale, y * yScale, xScale, yScale);
-            
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
-
-            if (infected) {    // if an animal is infected it has a red border.
-                g.setColor(Color.RED);
-                g.drawRect(x * xScale, y * yScale, xScale - 1, yScale - 1);
-            }
+            BufferedImage image = raster.getImage();
+            Dimension size = getSize();
+            int left = (int) ((long) bounds.x * size.width / image.getWidth());
+            int top = (int) ((long) bounds.y * size.height / image.getHeight());
+            int right = (int) (((long) (bounds.x + bounds.width) * size.width + image.getWidth() - 1) / image.getWidth());
+            int bottom = (int) (((long) (bounds.y + bounds.height) * size.height + image.getHeight() - 1) / image.getHeight());
+            repaint(left, top, right - left, bottom - top);
         }
 
         /**
          * The field view component needs to be redisplayed. Copy the
-         * internal image to screen.
+         * image of the field to screen, scaled to the component.
          */
         public void paintComponent(Graphics g)
         {
-            if(fieldImage != null) {
-                Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                }
-                else {
-                    // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
-                }
-            }
+            Dimension currentSize = getSize();
+            g.drawImage(raster.getImage(), 0, 0, currentSize.width, currentSize.height, null);
         }
     }
 }
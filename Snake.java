@@ -1,6 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * Models a Snake in the ecosystem simulation.
@@ -24,10 +22,6 @@ public class Snake extends Animal
     private static final int MAX_AGE = 9;
     private static final double BREEDING_PROBABILITY = 0.15;
     private static final int MAX_LITTER_SIZE = 5;
-    private static final int MOUSE_FOOD_VALUE = 20;
-    private static final int LIZARD_FOOD_VALUE = 25;
-    
-    protected static final Random rand = Randomizer.getRandom();
     
     /**
      * Create a new snake.
@@ -35,50 +29,10 @@ public class Snake extends Animal
      * @param randomAge If true, starts with random age and hunger.
      * @param field The field currently being used.
      * @param location The location within the field.
+     * @param rand The random stream for the initial age and sex.
      */
-    public Snake(boolean randomAge, Field field, Location location) {
-        super(location, randomAge, BREEDING_AGE, MAX_AGE);
-    }
-    
-    /**
-     * Look for prey adjacent to the current location.
-     * Snakes prefer lizards over mice and implement hunting efficiency reduction.
-     * Can become infected from eating infected mice.
-     * 
-     * @param field The field currently occupied.
-     * @return Where food was found, or null if none found.
-     */
-    @Override
-    protected Location findFood(Field field) {
-        if (getFoodLevel() < getMaxFoodValue() / 2) { // Only search for food if hungry
-    
-            List<Location> adjacent = field.getAdjacentLocations(getLocation());
-            Iterator<Location> it = adjacent.iterator();
-            
-            while(it.hasNext()) {
-                Location where = it.next();
-                Animal animal = field.getAnimalAt(where);
-                
-                // Only eat prey 50% of the time (reduce hunting efficiency)
-                if (rand.nextDouble() < 0.5) {
-                    if(animal instanceof Lizard && animal.isAlive()) {
-                        animal.setDead();
-                        eat(LIZARD_FOOD_VALUE);
-                        return where;
-                    }
-                }
-                else if(animal instanceof Mouse && animal.isAlive()) {
-                    // Check if the mouse is infected
-                    if (animal.isInfected() && Randomizer.getRandom().nextDouble() < PREDATOR_INFECTION_PROBABILITY) {
-                        setInfected();  // 80% chance to get infected
-                    }
-                    animal.setDead();
-                    eat(MOUSE_FOOD_VALUE);
-                    return where;
-                }
-            }
-        }
-        return null;
+    public Snake(boolean randomAge, Field field, Location location, RandomGenerator rand) {
+        super(field, location, randomAge, rand);
     }
     
     /**
@@ -100,12 +54,17 @@ public class Snake extends Animal
      * @param field The field to place the bear in.
      */
     @Override
-    protected void createYoung(boolean randomAge, Location location, Field field) {
-        Snake young = new Snake(randomAge, field, location);
+    protected void createYoung(boolean randomAge, Location location, Field field, RandomGenerator rand) {
+        Snake young = new Snake(randomAge, field, location, rand);
         field.placeAnimal(young, location);
     }
     
     // Implementation of abstract methods
+    @Override
+    public int getSpeciesId() {
+        return Species.SNAKE;
+    }
+    
     @Override
     protected int getMaxAge() {
         return MAX_AGE;
@@ -128,7 +87,7 @@ public class Snake extends Animal
     
     @Override
     protected int getMaxFoodValue() {
-        return MOUSE_FOOD_VALUE;  // Maximum food value from eating a deer
+        return FoodWeb.getFoodValue(Species.SNAKE, Species.MOUSE);  // Maximum food value from eating a mouse
     }
     
       @Override
@@ -138,8 +97,8 @@ public class Snake extends Animal
     }
     
     @Override
-    protected boolean isActiveTime() {
-        return !TimeKeeper.isDaytime(); // Nocturnal (Active during the day)
+    protected boolean isActiveTime(TimeKeeper clock) {
+        return !clock.isDaytime(); // Nocturnal (Active during the day)
     }
     
     @Override
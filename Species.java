@@ -0,0 +1,269 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The registry of the species in the simulation.
+ *
+ * Each species has a small consecutive id, so ids can be used to index
+ * per-species tables and stored compactly in a byte. For each species the
+ * registry holds its name, a factory creating a member, the chance that
+ * a cell starts with a member, the clusters placed at the start and its
+ * colour in the view, and for a plant the chance that it grows in a step.
+ * Adding a species means adding its id and its lines below (and its rows
+ * in the FoodWeb).
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class Species
+{
+    // Animals
+    public static final int BEAR = 0;
+    public static final int OWL = 1;
+    public static final int SNAKE = 2;
+    public static final int MOUSE = 3;
+    public static final int DEER = 4;
+    public static final int LIZARD = 5;
+    // Plants
+    public static final int BERRY = 6;
+    public static final int GRASS = 7;
+
+    // Animals have the ids below FIRST_PLANT, plants the ids from it.
+    public static final int FIRST_PLANT = BERRY;
+
+    // The number of species, i.e. the size of a per-species table.
+    public static final int COUNT = 8;
+
+    // The id returned when no species is chosen.
+    public static final int NONE = -1;
+
+    /**
+     * Creates an animal of a species.
+     */
+    public interface AnimalFactory
+    {
+        Animal create(boolean randomAge, Field field, Location location, RandomGenerator rand);
+    }
+
+    /**
+     * Creates a plant of a species.
+     */
+    public interface PlantFactory
+    {
+        Plant create(Location location, boolean randomize);
+    }
+
+    // The registry, indexed by species id.
+    private static final String[] NAMES = new String[COUNT];
+    private static final AnimalFactory[] ANIMAL_FACTORIES = new AnimalFactory[COUNT];
+    private static final PlantFactory[] PLANT_FACTORIES = new PlantFactory[COUNT];
+    private static final double[] CREATION_PROBABILITIES = new double[COUNT];
+    private static final int[] CLUSTER_COUNTS = new int[COUNT];
+    private static final int[] CLUSTER_MIN_SIZES = new int[COUNT];
+    private static final int[] CLUSTER_MAX_SIZES = new int[COUNT];
+    private static final Color[] COLORS = new Color[COUNT];
+    private static final double[] GROWTH_PROBABILITIES = new double[COUNT];
+    // The species in the order they were registered, which is the order
+    // their clusters are placed in.
+    private static final int[] PLACEMENT_ORDER = new int[COUNT];
+    private static int registered;
+
+    // The cumulative creation probabilities of the species that may be
+    // created, in id order, and those species.
+    private static final double[] CUMULATIVE;
+    private static final int[] CREATED;
+
+    static {
+        //     id      name      factory     creation  clusters: count min max  colour
+        plant( GRASS,  "Grass",  Grass::new, 0,                   30,   10, 20, new Color(0, 100, 0));
+        animal(MOUSE,  "Mouse",  Mouse::new, 0.08,                40,   30, 40, new Color(255, 215, 0));
+        animal(DEER,   "Deer",   Deer::new,  0.05,                30,   20, 30, new Color(205, 133, 63));
+        animal(OWL,    "Owl",    Owl::new,   0.02,                20,   10, 20, new Color(128, 128, 128));
+        animal(SNAKE,  "Snake",  Snake::new, 0.02,                20,   10, 15, new Color(50, 205, 50));
+        animal(BEAR,   "Bear",   Bear::new,  0.02,                3,    3,  6,  new Color(139, 69, 19));
+        animal(LIZARD, "Lizard", Lizard::new, 0.03,               0,    0,  0,  new Color(61, 127, 242));
+        plant( BERRY,  "Berry",  Berry::new, 0.09,                0,    0,  0,  new Color(148, 0, 211));
+
+        //     plant   chance to grow a stage in a step
+        grows( GRASS,  0.70);
+        grows( BERRY,  0.6);
+
+        int created = 0;
+        for(double probability : CREATION_PROBABILITIES) {
+            if(probability > 0) {
+                created++;
+            }
+        }
+        CUMULATIVE = new double[created];
+        CREATED = new int[created];
+        double total = 0;
+        int index = 0;
+        for(int speciesId = 0; speciesId < COUNT; speciesId++) {
+            if(CREATION_PROBABILITIES[speciesId] > 0) {
+                total += CREATION_PROBABILITIES[speciesId];
+                CUMULATIVE[index] = total;
+                CREATED[index] = speciesId;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * @return The display name of a species.
+     */
+    public static String getName(int speciesId)
+    {
+        return NAMES[speciesId];
+    }
+
+    /**
+     * @return Whether the species is an animal (rather than a plant).
+     */
+    public static boolean isAnimal(int speciesId)
+    {
+        return speciesId >= 0 && speciesId < FIRST_PLANT;
+    }
+
+    /**
+     * Create an animal of a species.
+     * @param speciesId An animal species.
+     * @param randomAge Whether to give it a random age (else it is newborn).
+     * @param field The field whose population it joins.
+     * @param location Its location.
+     * @param rand The random stream for its initial state.
+     * @return The new animal; it is not placed in the field.
+     */
+    public static Animal createAnimal(int speciesId, boolean randomAge, Field field, Location location,
+                                      RandomGenerator rand)
+    {
+        return ANIMAL_FACTORIES[speciesId].create(randomAge, field, location, rand);
+    }
+
+    /**
+     * Create a plant of a species.
+     * @param speciesId A plant species.
+     * @param location Its location.
+     * @param randomize Whether to give it a random growth stage.
+     * @return The new plant; it is not placed in the field.
+     */
+    public static Plant createPlant(int speciesId, Location location, boolean randomize)
+    {
+        return PLANT_FACTORIES[speciesId].create(location, randomize);
+    }
+
+    /**
+     * Choose the species a cell starts with, using the creation
+     * probabilities of all species as consecutive intervals of [0, 1).
+     * @param chance A number drawn uniformly from [0, 1).
+     * @return The species, or NONE if the cell starts empty.
+     */
+    public static int pickByCreationProbability(double chance)
+    {
+        // The first interval whose upper end is at least the chance.
+        int low = 0;
+        int high = CUMULATIVE.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(CUMULATIVE[middle] < chance) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low < CREATED.length ? CREATED[low] : NONE;
+    }
+
+    /**
+     * @return The species in the order their clusters are placed.
+     */
+    public static int[] getPlacementOrder()
+    {
+        return Arrays.copyOf(PLACEMENT_ORDER, registered);
+    }
+
+    /**
+     * @return The number of clusters of a species placed at the start.
+     */
+    public static int getClusterCount(int speciesId)
+    {
+        return CLUSTER_COUNTS[speciesId];
+    }
+
+    /**
+     * @return The smallest size of a cluster of a species.
+     */
+    public static int getClusterMinSize(int speciesId)
+    {
+        return CLUSTER_MIN_SIZES[speciesId];
+    }
+
+    /**
+     * @return The largest size of a cluster of a species.
+     */
+    public static int getClusterMaxSize(int speciesId)
+    {
+        return CLUSTER_MAX_SIZES[speciesId];
+    }
+
+    /**
+     * @return The colour of a species in the view.
+     */
+    public static Color getColor(int speciesId)
+    {
+        return COLORS[speciesId];
+    }
+
+    /**
+     * @return The chance that a plant of a species grows to its next
+     *         stage in a step, before any modifier.
+     */
+    public static double getGrowthProbability(int speciesId)
+    {
+        return GROWTH_PROBABILITIES[speciesId];
+    }
+
+    /**
+     * Register an animal species.
+     */
+    private static void animal(int speciesId, String name, AnimalFactory factory, double creationProbability,
+                               int clusters, int minSize, int maxSize, Color color)
+    {
+        ANIMAL_FACTORIES[speciesId] = factory;
+        register(speciesId, name, creationProbability, clusters, minSize, maxSize, color);
+    }
+
+    /**
+     * Register a plant species.
+     */
+    private static void plant(int speciesId, String name, PlantFactory factory, double creationProbability,
+                              int clusters, int minSize, int maxSize, Color color)
+    {
+        PLANT_FACTORIES[speciesId] = factory;
+        register(speciesId, name, creationProbability, clusters, minSize, maxSize, color);
+    }
+
+    /**
+     * Set the chance that a plant species grows in a step.
+     */
+    private static void grows(int speciesId, double growthProbability)
+    {
+        GROWTH_PROBABILITIES[speciesId] = growthProbability;
+    }
+
+    /**
+     * Record what all species have.
+     */
+    private static void register(int speciesId, String name, double creationProbability,
+                                 int clusters, int minSize, int maxSize, Color color)
+    {
+        NAMES[speciesId] = name;
+        CREATION_PROBABILITIES[speciesId] = creationProbability;
+        CLUSTER_COUNTS[speciesId] = clusters;
+        CLUSTER_MIN_SIZES[speciesId] = minSize;
+        CLUSTER_MAX_SIZES[speciesId] = maxSize;
+        COLORS[speciesId] = color;
+        PLACEMENT_ORDER[registered++] = speciesId;
+    }
+}
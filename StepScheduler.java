@@ -0,0 +1,250 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when the simulation may run its next step.
+ *
+ * There are three modes:
+ * - MAX_THROUGHPUT runs the steps one after another without waiting.
+ * - FIXED_RATE aims at a number of steps per second, waiting after a
+ *   step only for what is left of its share of time. A step that takes
+ *   too long just makes the run slower.
+ * - REAL_TIME keeps to a fixed timetable of steps. When the simulation
+ *   falls behind, it runs the late steps without waiting and without
+ *   showing them (the frames are skipped) until it has caught up. If it
+ *   is more than a second behind, the timetable starts again from now.
+ *
+ * The scheduler can be paused and resumed from another thread. A paused
+ * simulation waits on a condition rather than polling, and time spent
+ * paused does not count against the rate or the timetable.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class StepScheduler
+{
+    /**
+     * The ways of pacing the steps.
+     */
+    public enum Mode
+    {
+        MAX_THROUGHPUT, FIXED_RATE, REAL_TIME
+    }
+
+    // How far REAL_TIME may fall behind before it stops catching up.
+    private static final long MAX_LAG = TimeUnit.SECONDS.toNanos(1);
+
+    private final Mode mode;
+    private final double targetRate;
+    // The time between two steps, in nanoseconds.
+    private final long period;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled when the scheduler is paused or resumed.
+    private final Condition changed = lock.newCondition();
+    private boolean paused;
+    private long pauseStart;
+
+    // The progress of the current run.
+    private int steps;
+    private long startTime;
+    private long pausedTime;
+    // When the last step started (FIXED_RATE) and the next one is due (REAL_TIME).
+    private long lastStepStart;
+    private long nextDeadline;
+
+    /**
+     * Create a scheduler that runs the steps as fast as possible.
+     */
+    public StepScheduler()
+    {
+        this(Mode.MAX_THROUGHPUT, 0);
+    }
+
+    /**
+     * Create a scheduler.
+     * @param mode How to pace the steps.
+     * @param targetRate The steps per second to aim at; ignored for MAX_THROUGHPUT.
+     */
+    public StepScheduler(Mode mode, double targetRate)
+    {
+        if(mode != Mode.MAX_THROUGHPUT && !(targetRate > 0)) {
+            throw new IllegalArgumentException("The target rate must be positive: " + targetRate);
+        }
+        this.mode = mode;
+        this.targetRate = mode == Mode.MAX_THROUGHPUT ? 0 : targetRate;
+        this.period = mode == Mode.MAX_THROUGHPUT ? 0 : Math.round(1e9 / targetRate);
+    }
+
+    /**
+     * Start a new run: forget the steps counted so far.
+     */
+    public void start()
+    {
+        lock.lock();
+        try {
+            steps = 0;
+            pausedTime = 0;
+            startTime = System.nanoTime();
+            if(paused) {
+                pauseStart = startTime;
+            }
+            lastStepStart = startTime - period;
+            nextDeadline = startTime;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the next step is due, and while the scheduler is paused.
+     * @return Whether the step should be shown; false for a step run
+     *         to catch up in REAL_TIME mode.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean awaitNextStep() throws InterruptedException
+    {
+        lock.lock();
+        try {
+            while(true) {
+                if(paused) {
+                    changed.await();
+                }
+                else {
+                    long wait = dueTime() - System.nanoTime();
+                    if(wait <= 0) {
+                        break;
+                    }
+                    changed.awaitNanos(wait);
+                }
+            }
+            long now = System.nanoTime();
+            boolean show = true;
+            if(mode == Mode.FIXED_RATE) {
+                lastStepStart = now;
+            }
+            else if(mode == Mode.REAL_TIME) {
+                long behind = now - nextDeadline;
+                show = behind < period;
+                nextDeadline = behind > MAX_LAG ? now + period : nextDeadline + period;
+            }
+            steps++;
+            return show;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the simulation before its next step until resume is called.
+     */
+    public void pause()
+    {
+        lock.lock();
+        try {
+            if(!paused) {
+                paused = true;
+                pauseStart = System.nanoTime();
+                changed.signalAll();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Let a paused simulation carry on.
+     */
+    public void resume()
+    {
+        lock.lock();
+        try {
+            if(paused) {
+                paused = false;
+                long pausedFor = System.nanoTime() - pauseStart;
+                pausedTime += pausedFor;
+                lastStepStart += pausedFor;
+                nextDeadline += pausedFor;
+                changed.signalAll();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether the scheduler is paused.
+     */
+    public boolean isPaused()
+    {
+        lock.lock();
+        try {
+            return paused;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How the steps are paced.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * @return The steps per second aimed at, or 0 for MAX_THROUGHPUT.
+     */
+    public double getTargetRate()
+    {
+        return targetRate;
+    }
+
+    /**
+     * @return The steps per second achieved since the start of the run,
+     *         not counting the time spent paused.
+     */
+    public double getAchievedRate()
+    {
+        lock.lock();
+        try {
+            long end = paused ? pauseStart : System.nanoTime();
+            long elapsed = end - startTime - pausedTime;
+            return elapsed > 0 ? steps * 1e9 / elapsed : 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return A description of the achieved and the target rate.
+     */
+    public String getRateDetails()
+    {
+        String target = mode == Mode.MAX_THROUGHPUT ? "max" : String.format("%.1f", targetRate);
+        return String.format("%.1f steps/s (target %s)", getAchievedRate(), target);
+    }
+
+    /**
+     * @return When the next step is due.
+     */
+    private long dueTime()
+    {
+        switch(mode) {
+            case FIXED_RATE:
+                return lastStepStart + period;
+            case REAL_TIME:
+                return nextDeadline;
+            default:
+                return System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+
+/**
+ * A summary of a stream of numbers that is updated one value at a time
+ * and never keeps the values themselves: the count, mean and variance
+ * (using Welford's method) and estimates of some quantiles (using the
+ * P-square algorithm of Jain and Chlamtac, which follows each quantile
+ * with five markers).
+ *
+ * Not thread-safe.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class StreamingSummary
+{
+    private long count;
+    private double mean;
+    // The sum of squared differences from the mean.
+    private double m2;
+    private final Quantile[] quantiles;
+
+    /**
+     * Create an empty summary.
+     * @param probabilities The quantiles to estimate, each between 0 and 1.
+     */
+    public StreamingSummary(double... probabilities)
+    {
+        quantiles = new Quantile[probabilities.length];
+        for(int i = 0; i < probabilities.length; i++) {
+            quantiles[i] = new Quantile(probabilities[i]);
+        }
+    }
+
+    /**
+     * Add a value to the summary.
+     * @param value The value.
+     */
+    public void add(double value)
+    {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        for(Quantile quantile : quantiles) {
+            quantile.add(value);
+        }
+    }
+
+    /**
+     * @return The number of values added.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return The mean of the values, or NaN if there are none.
+     */
+    public double getMean()
+    {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * @return The sample variance of the values, or NaN if there are fewer than two.
+     */
+    public double getVariance()
+    {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * @return The sample standard deviation of the values.
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Return the estimate of one of the quantiles.
+     * @param index The position of the quantile in the constructor's arguments.
+     * @return The estimate, or NaN if there are no values.
+     */
+    public double getQuantile(int index)
+    {
+        return quantiles[index].get();
+    }
+
+    /**
+     * An estimate of one quantile by the P-square algorithm.
+     */
+    private static class Quantile
+    {
+        private final double p;
+        // The heights and the actual and desired positions of the markers.
+        private final double[] heights = new double[5];
+        private final int[] positions = new int[5];
+        private final double[] desired;
+        // How much the desired positions move with each value.
+        private final double[] increments;
+        private int count;
+
+        Quantile(double p)
+        {
+            this.p = p;
+            desired = new double[] {1, 1 + 2 * p, 1 + 4 * p, 3 + 2 * p, 5};
+            increments = new double[] {0, p / 2, p, (1 + p) / 2, 1};
+        }
+
+        void add(double value)
+        {
+            if(count < 5) {
+                heights[count++] = value;
+                if(count == 5) {
+                    Arrays.sort(heights);
+                    for(int i = 0; i < 5; i++) {
+                        positions[i] = i + 1;
+                    }
+                }
+                return;
+            }
+            count++;
+
+            // Find the cell the value falls in, extending the ends if needed.
+            int cell;
+            if(value < heights[0]) {
+                heights[0] = value;
+                cell = 0;
+            }
+            else if(value >= heights[4]) {
+                heights[4] = Math.max(heights[4], value);
+                cell = 3;
+            }
+            else {
+                cell = 0;
+                while(value >= heights[cell + 1]) {
+                    cell++;
+                }
+            }
+            for(int i = cell + 1; i < 5; i++) {
+                positions[i]++;
+            }
+            for(int i = 0; i < 5; i++) {
+                desired[i] += increments[i];
+            }
+
+            // Move the middle markers towards their desired positions.
+            for(int i = 1; i <= 3; i++) {
+                double offset = desired[i] - positions[i];
+                if((offset >= 1 && positions[i + 1] - positions[i] > 1)
+                   || (offset <= -1 && positions[i - 1] - positions[i] < -1)) {
+                    int step = offset > 0 ? 1 : -1;
+                    double height = parabolic(i, step);
+                    if(heights[i - 1] < height && height < heights[i + 1]) {
+                        heights[i] = height;
+                    }
+                    else {
+                        heights[i] = linear(i, step);
+                    }
+                    positions[i] += step;
+                }
+            }
+        }
+
+        double get()
+        {
+            if(count == 0) {
+                return Double.NaN;
+            }
+            if(count < 5) {
+                // Too few values for the markers: use the values themselves.
+                double[] values = Arrays.copyOf(heights, count);
+                Arrays.sort(values);
+                return values[(int) Math.round(p * (count - 1))];
+            }
+            return heights[2];
+        }
+
+        private double parabolic(int i, int step)
+        {
+            double below = positions[i] - positions[i - 1];
+            double above = positions[i + 1] - positions[i];
+            return heights[i] + (double) step / (positions[i + 1] - positions[i - 1])
+                   * ((below + step) * (heights[i + 1] - heights[i]) / above
+                      + (above - step) * (heights[i] - heights[i - 1]) / below);
+        }
+
+        private double linear(int i, int step)
+        {
+            return heights[i] + step * (heights[i + step] - heights[i])
+                                / (positions[i + step] - positions[i]);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Marks, for each guild of predators, the cells that have a member of
+ * the guild in their neighbourhood. Prey use it to tell whether danger
+ * is nearby with a single lookup instead of scanning their neighbours.
+ *
+ * Each guild is a bitset with one bit per cell, kept in 64 x 64 chunks
+ * like the field itself, one 64-bit word per row of a chunk. A chunk is
+ * only allocated for a guild where a member is nearby, so the map of a
+ * large field that is mostly empty stays small. The map is built in one
+ * pass over the population at the start of a step, before the animals
+ * age, and is not changed while they act. As before, a predator that
+ * dies during the step still counts until the step is over.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class ThreatMap
+{
+    // The number of guilds (see FoodWeb).
+    private static final int GUILDS = FoodWeb.GUILDS;
+
+    // The guilds each species belongs to, as a bit mask, indexed by species id.
+    private static final int[] GUILDS_OF = new int[Species.COUNT];
+    static {
+        for(int speciesId = 0; speciesId < Species.COUNT; speciesId++) {
+            GUILDS_OF[speciesId] = FoodWeb.getGuilds(speciesId);
+        }
+    }
+
+    private final int depth;
+    // The number of chunks across a row of the field.
+    private final int chunksAcross;
+    // The cells next to a guild member, indexed by [guild][chunk][row in chunk];
+    // null for a chunk with no member nearby.
+    private final long[][][] threatened = new long[GUILDS][][];
+    // The cells of the guild members, indexed like threatened.
+    private final long[][][] members = new long[GUILDS][][];
+    // The chunk words of the previous update, to be reused.
+    private final ArrayDeque<long[]> spare = new ArrayDeque<>();
+
+    /**
+     * Create an empty map for a field of the given size.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public ThreatMap(int depth, int width)
+    {
+        this.depth = depth;
+        chunksAcross = Field.chunksAlong(width);
+        int chunks = Field.chunksAlong(depth) * chunksAcross;
+        for(int guild = 0; guild < GUILDS; guild++) {
+            threatened[guild] = new long[chunks][];
+            members[guild] = new long[chunks][];
+        }
+    }
+
+    /**
+     * Rebuild the map from the live animals of a population, which at the
+     * start of a step are exactly the animals in the current field.
+     * @param population The population of the field.
+     */
+    public void update(Population population)
+    {
+        for(int guild = 0; guild < GUILDS; guild++) {
+            release(members[guild]);
+            release(threatened[guild]);
+        }
+        population.visitCells((cell, speciesId) -> {
+            int guilds = GUILDS_OF[speciesId];
+            if(guilds != 0) {
+                int row = Location.rowOf(cell);
+                int col = Location.colOf(cell);
+                int chunk = Field.chunkIndexOf(chunksAcross, row, col);
+                for(int guild = 0; guild < GUILDS; guild++) {
+                    if((guilds & 1 << guild) != 0) {
+                        words(members[guild], chunk)[row & Field.CHUNK_MASK] |= 1L << col;
+                    }
+                }
+            }
+        });
+        for(int guild = 0; guild < GUILDS; guild++) {
+            spread(members[guild], threatened[guild]);
+        }
+    }
+
+    /**
+     * Tell whether a cell has a member of a guild in its neighbourhood.
+     * @param cell The packed index of the cell.
+     * @param guild The guild, e.g. FoodWeb.BEARS.
+     * @return true if a member of the guild is next to the cell.
+     */
+    public boolean isThreatened(int cell, int guild)
+    {
+        int row = Location.rowOf(cell);
+        int col = Location.colOf(cell);
+        long[] words = threatened[guild][Field.chunkIndexOf(chunksAcross, row, col)];
+        return words != null && (words[row & Field.CHUNK_MASK] & 1L << col) != 0;
+    }
+
+    /**
+     * Mark the cells around the members: spread each row of members
+     * sideways by one cell, spilling over into the chunks to the left
+     * and right, then mark the spread row and the rows above and below.
+     */
+    private void spread(long[][] found, long[][] bits)
+    {
+        for(int chunk = 0; chunk < found.length; chunk++) {
+            long[] words = found[chunk];
+            if(words == null) {
+                continue;
+            }
+            int firstRow = (chunk / chunksAcross) << Field.CHUNK_BITS;
+            int chunkCol = chunk % chunksAcross;
+            for(int word = 0; word < words.length; word++) {
+                long here = words[word];
+                if(here != 0) {
+                    int row = firstRow + word;
+                    markRows(bits, row, chunkCol, here | here << 1 | here >>> 1);
+                    if((here & 1) != 0 && chunkCol > 0) {
+                        markRows(bits, row, chunkCol - 1, 1L << Field.CHUNK_MASK);
+                    }
+                    if(here < 0 && chunkCol < chunksAcross - 1) {
+                        markRows(bits, row, chunkCol + 1, 1L);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the given columns of a chunk column in a row and the rows
+     * above and below it.
+     */
+    private void markRows(long[][] bits, int row, int chunkCol, long mask)
+    {
+        for(int r = Math.max(row - 1, 0); r <= Math.min(row + 1, depth - 1); r++) {
+            words(bits, (r >> Field.CHUNK_BITS) * chunksAcross + chunkCol)[r & Field.CHUNK_MASK] |= mask;
+        }
+    }
+
+    /**
+     * Hand the words of every chunk of a guild back for reuse.
+     */
+    private void release(long[][] chunks)
+    {
+        for(int chunk = 0; chunk < chunks.length; chunk++) {
+            if(chunks[chunk] != null) {
+                spare.push(chunks[chunk]);
+                chunks[chunk] = null;
+            }
+        }
+    }
+
+    /**
+     * Return the words of a chunk of a guild, allocating them if needed.
+     */
+    private long[] words(long[][] chunks, int chunk)
+    {
+        long[] words = chunks[chunk];
+        if(words == null) {
+            words = spare.poll();
+            if(words == null) {
+                words = new long[Field.CHUNK_SIZE];
+            }
+            else {
+                Arrays.fill(words, 0);
+            }
+            chunks[chunk] = words;
+        }
+        return words;
+    }
+}
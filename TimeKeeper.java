@@ -1,41 +1,69 @@
 /**
  * Manages time progression in the simulation.
  * Handles day/night cycles and seasons, important for simulating realistic environmental changes.
+ * Each simulation has a clock of its own (see SimulationContext).
  * @author Hamed Latif & Tuleen Rowaihy
  * @version 20.02.25
  */
 public class TimeKeeper
 {
     // Time tracking (each step is 12 hours), 2 steps = 1 day
-    private static boolean isDay = true;  // true = day, false = night
-    private static int currentDay = 1;    // 1-30
-    private static int currentMonth = 0;  // 0-11 (Jan-Dec)
+    private boolean isDay = true;  // true = day, false = night
+    private int currentDay = 1;    // 1-30
+    private int currentMonth = 0;  // 0-11 (Jan-Dec)
+
+    /**
+     * Create a clock at daytime on the first day of January.
+     */
+    public TimeKeeper() {
+    }
+
+    /**
+     * Create a clock at a given time, e.g. a saved one.
+     * @param day The day of the month (1-30).
+     * @param month The month (0-11).
+     * @param isDay Whether it is daytime.
+     */
+    public TimeKeeper(int day, int month, boolean isDay) {
+        this.currentDay = day;
+        this.currentMonth = month;
+        this.isDay = isDay;
+    }
 
     /**
      * Check if it's currently daytime (AM)
      */
-    public static boolean isDaytime() {
+    public boolean isDaytime() {
         return isDay;
     }
     
     /**
      * Get current month (0-11)
      */
-    public static int getCurrentMonth() {
+    public int getCurrentMonth() {
         return currentMonth;
     }
     
     /**
      * Get current season
      */
-    public static String getCurrentSeason() {
+    public String getCurrentSeason() {
         return Season.getSeason(currentMonth);
     }
     
+    /**
+     * Go back to the first day of January, at daytime.
+     */
+    public void reset() {
+        isDay = true;
+        currentDay = 1;
+        currentMonth = 0;
+    }
+    
     /**
      * Advance time by 12 hours.
      */
-    public static void advanceTime() {
+    public void advanceTime() {
         isDay = !isDay; // Toggle between day and night
         if (isDay) {
             currentDay++;
@@ -49,21 +77,21 @@ public class TimeKeeper
     /**
      * Get time of day as string
      */
-    public static String getTimeOfDay() {
+    public String getTimeOfDay() {
         return isDay ? "Day" : "Night";
     }
     
     /**
      * Get current day of month
      */
-    public static int getCurrentDay() {
+    public int getCurrentDay() {
         return currentDay;
     }
     
     /**
      * Get a formatted string of current time
      */
-    public static String getTimeString() {
+    public String getTimeString() {
         String[] months = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", 
                           "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
         return String.format("%d %s (%s) - %s", 
@@ -1,6 +1,4 @@
-import java.util.List;
-import java.util.Iterator;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * The forest isn't always sunny.
@@ -14,19 +12,26 @@ public class Weather {
     private static final double SUMMER_RAIN_CHANCE = 0.3; // 30% in summer
     private static final double DEFAULT_RAIN_CHANCE = 0.5; // 50% in spring and autumn
     private boolean raining;
-    private Random rand;
 
     public Weather() {
-        this.rand = new Random();
-        this.raining = false; // random object for raining probability
+        this.raining = false;
+    }
+
+    /**
+     * Create weather that is already raining or not, e.g. saved weather.
+     * @param raining Whether it is raining.
+     */
+    public Weather(boolean raining) {
+        this.raining = raining;
     }
 
     /**
      * Update the weather based on the current season.
      * The chance of it raining is set depending on the season.
      * @param currentSeason The current season as a string.
+     * @param rand The random stream for this step's weather.
      */
-    public void updateWeather(String currentSeason) {
+    public void updateWeather(String currentSeason, RandomGenerator rand) {
         double rainProbability;
         if (currentSeason.equals(Season.WINTER)) {
             rainProbability = WINTER_RAIN_CHANCE;
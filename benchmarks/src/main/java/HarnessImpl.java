@@ -0,0 +1,63 @@
+import benchmarks.SimulationHarness;
+import java.util.SplittableRandom;
+
+/**
+ * Gives the JMH benchmarks (in the package "benchmarks") access to the
+ * simulation, whose classes are in the default package like this one.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public class HarnessImpl implements SimulationHarness
+{
+    private Simulator simulator;
+    private FieldRaster raster;
+    private final FieldStats stats = new FieldStats();
+    // The stream used to shuffle neighbour lists.
+    private final SplittableRandom rand = new SplittableRandom(Randomizer.DEFAULT_SEED);
+
+    @Override
+    public void setUp(int size)
+    {
+        simulator = new Simulator(size, size, false);
+        raster = new FieldRaster(size, size, 1);
+    }
+
+    @Override
+    public void populate()
+    {
+        simulator.reset();
+    }
+
+    @Override
+    public void step()
+    {
+        simulator.simulateOneStep();
+    }
+
+    @Override
+    public Object adjacentLocations(int row, int col)
+    {
+        return simulator.getField().getAdjacentLocations(new Location(row, col), rand);
+    }
+
+    @Override
+    public Object freeAdjacentLocations(int row, int col)
+    {
+        return simulator.getField().getFreeAdjacentLocations(new Location(row, col), rand);
+    }
+
+    @Override
+    public String populationDetails()
+    {
+        return stats.getPopulationDetails(simulator.getField());
+    }
+
+    @Override
+    public Object render()
+    {
+        SimulationFrame frame = SimulationFrame.capture(simulator.getContext(), simulator.getField(), stats);
+        raster.update(frame);
+        return raster.getImage();
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the list-based neighbour lookups of Field on a populated
+ * 120x120 field, visiting every cell in turn.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark
+{
+    private static final int SIZE = 120;
+
+    private SimulationHarness harness;
+    private int cell;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        harness = SimulationHarness.create();
+        harness.setUp(SIZE);
+    }
+
+    @Benchmark
+    public void getAdjacentLocations(Blackhole blackhole)
+    {
+        blackhole.consume(harness.adjacentLocations(cell / SIZE, cell % SIZE));
+        cell = (cell + 1) % (SIZE * SIZE);
+    }
+
+    @Benchmark
+    public void getFreeAdjacentLocations(Blackhole blackhole)
+    {
+        blackhole.consume(harness.freeAdjacentLocations(cell / SIZE, cell % SIZE));
+        cell = (cell + 1) % (SIZE * SIZE);
+    }
+}
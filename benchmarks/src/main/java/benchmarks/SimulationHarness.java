@@ -0,0 +1,67 @@
+package benchmarks;
+
+/**
+ * The operations of the simulation that are benchmarked.
+ *
+ * The simulation's classes are in the default package, which classes in
+ * a named package cannot refer to, and JMH only accepts benchmarks in a
+ * named package. The benchmarks therefore use this interface, which is
+ * implemented in the default package by HarnessImpl and loaded by name.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+public interface SimulationHarness
+{
+    /**
+     * Create a headless simulation of the given size and populate it.
+     * @param size The depth and width of the field.
+     */
+    void setUp(int size);
+
+    /**
+     * Populate the field again from the start (Simulator.reset).
+     */
+    void populate();
+
+    /**
+     * Run one step (Simulator.simulateOneStep).
+     */
+    void step();
+
+    /**
+     * @return The locations next to a cell (Field.getAdjacentLocations).
+     */
+    Object adjacentLocations(int row, int col);
+
+    /**
+     * @return The free locations next to a cell (Field.getFreeAdjacentLocations).
+     */
+    Object freeAdjacentLocations(int row, int col);
+
+    /**
+     * @return The population text of the current field (FieldStats.getPopulationDetails).
+     */
+    String populationDetails();
+
+    /**
+     * Draw the current field as the view does, without a window:
+     * take a frame and update the raster from it.
+     * @return The image drawn into.
+     */
+    Object render();
+
+    /**
+     * Create the harness implemented in the default package.
+     * @return A new harness.
+     */
+    static SimulationHarness create()
+    {
+        try {
+            return (SimulationHarness) Class.forName("HarnessImpl").getDeclaredConstructor().newInstance();
+        }
+        catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("The simulation classes are not on the class path", e);
+        }
+    }
+}
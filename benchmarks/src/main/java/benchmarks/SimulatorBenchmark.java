@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks a whole step of the simulation, and populating the field,
+ * at several field sizes. Steps are timed in single-shot batches of
+ * STEPS steps, and the simulation is populated again before each batch,
+ * so every batch measures the same first STEPS steps of a fresh
+ * population rather than one that has drifted or died out. The score of
+ * simulateOneStep is the time of a whole batch.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark
+{
+    // The number of steps timed after each fresh population.
+    private static final int STEPS = 20;
+
+    @Param({"120", "500", "2000"})
+    public int size;
+
+    private SimulationHarness harness;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        harness = SimulationHarness.create();
+        harness.setUp(size);
+    }
+
+    // Before each batch of steps, as every iteration is one batch.
+    @Setup(Level.Iteration)
+    public void repopulate()
+    {
+        harness.populate();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = STEPS)
+    @Measurement(iterations = 10, batchSize = STEPS)
+    public void simulateOneStep()
+    {
+        harness.step();
+    }
+
+    @Benchmark
+    public void populate()
+    {
+        harness.populate();
+    }
+}
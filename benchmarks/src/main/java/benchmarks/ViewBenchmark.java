@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the statistics text and the drawing of a frame, as the view
+ * does after each step but without a window. The simulation is stepped
+ * before every call to render, so that the raster has cells to redraw;
+ * the step itself is not measured.
+ *
+ * @author Hamed Latif & Tuleen Rowaihy
+ * @version 20.02.25
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewBenchmark
+{
+    @Param({"120", "500"})
+    public int size;
+
+    private SimulationHarness harness;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        harness = SimulationHarness.create();
+        harness.setUp(size);
+    }
+
+    @Setup(Level.Iteration)
+    public void repopulate()
+    {
+        harness.populate();
+    }
+
+    @Benchmark
+    public String getPopulationDetails()
+    {
+        return harness.populationDetails();
+    }
+
+    @State(Scope.Thread)
+    public static class Stepped
+    {
+        @Setup(Level.Invocation)
+        public void step(ViewBenchmark benchmark)
+        {
+            benchmark.harness.step();
+        }
+    }
+
+    @Benchmark
+    public Object showStatus(Stepped stepped)
+    {
+        return harness.render();
+    }
+}